@@ -0,0 +1,52 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Factory;
+import model.PollList;
+
+/**
+ * Measures generating random poll lists from a seed.
+ *
+ * @author Joshua Lee
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class FactoryBenchmark {
+	// number of polls x number of parties.  Not every combination fits in memory,
+	// so the scales are listed instead of crossing two parameters.
+	@Param({"10x10", "1000x100", "100000x10", "1000000x10", "100x10000"})
+	public String scale;
+
+	private int polls;
+	private int parties;
+
+	@Setup
+	public void setUp() {
+		polls = Integer.parseInt(scale.substring(0, scale.indexOf('x')));
+		parties = Integer.parseInt(scale.substring(scale.indexOf('x') + 1));
+		Factory.getInstance().setPartyIdentifiers(PollListBenchmark.partyNames(parties),
+				PollListBenchmark.partyColours(parties));
+	}
+
+	@Benchmark
+	public PollList createRandomPollList() {
+		return Factory.getInstance().createRandomPollList(polls, 219);
+	}
+}
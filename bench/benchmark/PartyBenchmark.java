@@ -0,0 +1,63 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.paint.Color;
+import model.Party;
+
+/**
+ * Measures drawing a single party, which is what every text visualization
+ * of a poll or poll list spends its time on.
+ *
+ * @author Joshua Lee
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartyBenchmark {
+	// seats of the party out of 345, below and above the majority
+	@Param({"40", "200"})
+	public float seats;
+
+	private Party party;
+	private StringBuilder out;
+
+	@Setup
+	public void setUp() {
+		party = new Party("Benchmark party", seats, seats / 345);
+		party.setColour(Color.RED);
+		out = new StringBuilder(256);
+	}
+
+	@Benchmark
+	public String textVisualizationBySeats() {
+		return party.textVisualizationBySeats(18, 20);
+	}
+
+	@Benchmark
+	public String textVisualizationByVotes() {
+		return party.textVisualizationByVotes(18, 6);
+	}
+
+	@Benchmark
+	public StringBuilder textVisualizationBySeatsAppendable() throws Exception {
+		out.setLength(0);
+		party.textVisualizationBySeats(out, 18, 20);
+		return out;
+	}
+}
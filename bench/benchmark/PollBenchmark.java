@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.Party;
+import model.Poll;
+
+/**
+ * Measures filling a poll with parties and looking parties up, by name and by id,
+ * for polls with 10 to 10,000 parties.
+ *
+ * @author Joshua Lee
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PollBenchmark {
+	@Param({"10", "100", "1000", "10000"})
+	public int parties;
+
+	private String[] names;
+	private int[] ids;
+	private Poll poll;
+
+	@Setup
+	public void setUp() {
+		names = new String[parties];
+		ids = new int[parties];
+		poll = new Poll("Benchmark poll", parties);
+		for (int index = 0; index < parties; index++) {
+			names[index] = "Party" + index;
+			Party party = new Party(names[index], 1, 1.0f / parties);
+			ids[index] = party.getId();
+			poll.addParty(party);
+		}
+	}
+
+	/**
+	 * Adds every party to a new poll.  The parties are created up front by
+	 * nothing but their names, so creating the parties is part of the measurement.
+	 */
+	@Benchmark
+	public Poll addParty() {
+		Poll newPoll = new Poll("Benchmark poll", parties);
+		for (int index = 0; index < parties; index++) {
+			newPoll.addParty(new Party(names[index], 1, 1.0f / parties));
+		}
+		return newPoll;
+	}
+
+	@Benchmark
+	public void getPartyByName(Blackhole blackhole) {
+		for (int index = 0; index < parties; index++) {
+			blackhole.consume(poll.getParty(names[index]));
+		}
+	}
+
+	@Benchmark
+	public void getPartyById(Blackhole blackhole) {
+		for (int index = 0; index < parties; index++) {
+			blackhole.consume(poll.getParty(ids[index]));
+		}
+	}
+}
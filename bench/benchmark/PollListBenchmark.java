@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.paint.Color;
+import model.Factory;
+import model.Poll;
+import model.PollList;
+
+/**
+ * Measures aggregating and drawing poll lists of 10 to 1,000,000 polls with
+ * 10 to 10,000 parties.  The lists are generated once per trial from a fixed
+ * seed, so every run measures the same data.
+ * <p>
+ * The text visualizations are measured both as Strings and streamed into a
+ * writer that drops its input, which shows what building the String costs.
+ *
+ * @author Joshua Lee
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class PollListBenchmark {
+	// number of polls x number of parties.  Not every combination fits in memory,
+	// so the scales are listed instead of crossing two parameters.
+	@Param({"10x10", "1000x100", "100000x10", "1000000x10", "100x10000"})
+	public String scale;
+
+	private int polls;
+	private int parties;
+
+	private PollList list;
+	private String[] names;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		polls = Integer.parseInt(scale.substring(0, scale.indexOf('x')));
+		parties = Integer.parseInt(scale.substring(scale.indexOf('x') + 1));
+		names = partyNames(parties);
+		Factory factory = Factory.getInstance();
+		factory.setPartyIdentifiers(names, partyColours(parties));
+		list = factory.createRandomPollList(polls, 219);
+	}
+
+	@Benchmark
+	public Poll getAggregatePoll() {
+		return list.getAggregatePoll(names);
+	}
+
+	@Benchmark
+	public String textVisualizationBySeats() {
+		return list.textVisualizationBySeats();
+	}
+
+	@Benchmark
+	public String textVisualizationByVotes() {
+		return list.textVisualizationByVotes();
+	}
+
+	@Benchmark
+	public void textVisualizationBySeatsStreamed() throws Exception {
+		list.textVisualizationBySeats(Writer.nullWriter());
+	}
+
+	static String[] partyNames(int parties) {
+		String[] names = new String[parties];
+		for (int index = 0; index < parties; index++) {
+			names[index] = "Party" + index;
+		}
+		return names;
+	}
+
+	static Color[] partyColours(int parties) {
+		Color[] colours = new Color[parties];
+		for (int index = 0; index < parties; index++) {
+			colours[index] = Color.hsb(360.0 * index / parties, 0.8, 0.8);
+		}
+		return colours;
+	}
+}
@@ -16,6 +16,7 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.util.StringConverter;
 import model.*;
 
 public class EditPollController {
@@ -29,11 +30,13 @@ public class EditPollController {
     @FXML
     private BorderPane editor;
     @FXML
+    private Button newPollsButton;
+    @FXML
     private Label numberOfSeats;
     @FXML
     private FlowPane options;
     @FXML
-    private ChoiceBox<String> partyDropdown;
+    private ChoiceBox<Integer> partyDropdown;
     @FXML
     private BorderPane partyEditor;
     @FXML
@@ -43,7 +46,7 @@ public class EditPollController {
     @FXML
     private Label percentageSign;
     @FXML
-    private ChoiceBox<String> pollDropdown;
+    private ChoiceBox<Integer> pollDropdown;
     @FXML
     private FlowPane pollNameEditor;
     @FXML
@@ -72,8 +75,8 @@ public class EditPollController {
     
     /** instance variables that are required throughout multiple methods */
     private PollList polls;
-    private String pollSelectedToChange;
-    private String partySelectedToChange;
+    private Integer pollSelectedToChange;
+    private Integer partySelectedToChange;
 
     
     /** connector() method
@@ -97,44 +100,43 @@ public class EditPollController {
     }
     
     
+    /** newPolls() method that puts the current polls away and goes back
+     * to the setup view upon clicking of the New polls button */
+    @FXML
+    void newPolls(ActionEvent event) {
+    	app.newPolls();
+    }
+    
+    
     /* updateParty() method 
      * Updates party information (expected number of seats and votes)
      * inside the poll and party specified by user */
     @FXML
     void updateParty(ActionEvent event) {
-    	Poll[] pollArray = polls.toArray();
-    	
     	// grab user's selection and save it in respective variables
     	pollSelectedToChange = pollDropdown.getValue();
     	partySelectedToChange = partyDropdown.getValue();
     	String updatedSeatsForParty = seatsTextfield.getText();
     	String updatedPercentageOfVote = votesTextfield.getText();
     	
+    	if (pollSelectedToChange == null || partySelectedToChange == null) {
+    		return;
+    	}
     	
-    	ArrayList<String> newPartyInfo = new ArrayList<String>();
+    	// the dropdowns hold the ids of the poll and party, so they are updated directly;
+    	// the poll list records the update in its journal, so it survives a crash
+    	polls.updateParty(pollSelectedToChange, partySelectedToChange,
+    			Float.parseFloat(updatedSeatsForParty), (Float.parseFloat(updatedPercentageOfVote))/100);
     	
-    	// iterate through polls to find matching poll name
-    	for (Poll p: pollArray) {
-    		if ((p.getPollName()).equals(pollSelectedToChange)) {
-    			Party[] pollParties = p.getParties();
-    			
-    			// iterate through parties to find matching party name
-    			for (Party party: pollParties) {
-    				if (party.toString().equals(partySelectedToChange)) {
-    					
-    					// once party is found, update values
-    					party.setProjectedNumberOfSeats(Float.parseFloat(updatedSeatsForParty));
-    					party.setProjectedPercentageOfVotes((Float.parseFloat(updatedPercentageOfVote))/100);
-    				}
-    				// immediately display the change in dropdown box
-    				partyDropdown.setValue(party.toString());
-    				newPartyInfo.add(party.toString());
-    			}
-    		}
+    	// update the dropdown options to now include the new change,
+    	// and immediately display the change in dropdown box
+    	showParties(pollSelectedToChange);
+    	partyDropdown.setValue(partySelectedToChange);
+    	// the ingestion service hears of the change from the poll list and redraws
+    	// the charts on the next frame, together with any background updates
+    	if (PollTrackerApp.ingestion == null) {
+    		visualizer.start();
     	}
-    	// update the dropdown options to now include the new change
-    	partyDropdown.setItems(FXCollections.observableArrayList(newPartyInfo));
-    	visualizer.start();
     }
 
     
@@ -142,30 +144,25 @@ public class EditPollController {
      *  Updates the name of the poll the user specified through the ChoiceBox */
     @FXML
     void updatePollName(ActionEvent event) {
-    	// convert polls to Array in order to make them iterable
-        Poll[] pollArray = polls.toArray();
-        
         // save user input for which poll to change and its new name
     	pollSelectedToChange = pollDropdown.getValue();
     	String updatedPollName = pollNameTextfield.getText();
     	
-    	ArrayList<String> newPollNames = new ArrayList();
- 
-    	// iterate through polls to find matching poll, then set new name
-    	for (Poll p: pollArray) {
-    		if ((p.getPollName()).equals(pollSelectedToChange)) {
-    			p.setPollName(updatedPollName);
-    		}
-    		newPollNames.add(p.getPollName());
+    	if (pollSelectedToChange == null) {
+    		return;
     	}
+    	polls.setPollName(pollSelectedToChange, updatedPollName);
 
     	initialize();
     	
     	// immediately display new change in dropdown box
-    	pollDropdown.setValue(updatedPollName);
+    	pollDropdown.setValue(pollSelectedToChange);
     	
-    	// update the poll names under visualize tab as well
-    	visualizer.updatePollNames(newPollNames);
+    	// update the poll names under visualize tab as well, unless the ingestion
+    	// service already heard of the new name from the poll list
+    	if (PollTrackerApp.ingestion == null) {
+    		visualizer.updatePollNames();
+    	}
     }
     
     
@@ -176,52 +173,76 @@ public class EditPollController {
     	// call setPolls() to initialize polls instance variable
     	this.polls = setPolls(app.polls);
     	
-    	Poll[] pollArray = polls.toArray();
-    	
     	// sets the Label to display the accurate number of seats that are available in the election
     	Integer seatsAvailable = polls.getNumOfSeats();
     	numberOfSeats.setText("/ " + seatsAvailable.toString());
     	
-    	// displaying the poll names in dropdown to select poll
-    	ArrayList<String> pollNames = new ArrayList();
-    	
-    	for (Poll p: pollArray) {
-    		String nameOfPoll = p.getPollName();
-    		pollNames.add(nameOfPoll);
+    	// the dropdown holds the poll ids and displays the poll names
+    	ArrayList<Integer> pollIds = new ArrayList<Integer>();
+    	for (int index = 0; index < polls.size(); index++) {
+    		pollIds.add(polls.getPollId(index));
     	}
+    	pollDropdown.setConverter(new StringConverter<Integer>() {
+			@Override
+			public String toString(Integer pollId) {
+				Poll poll = pollId == null ? null : polls.getPollById(pollId);
+				return poll == null ? "" : poll.getPollName();
+			}
+
+			@Override
+			public Integer fromString(String string) {
+				return null;
+			}
+    	});
     	
     	// setting the values in the dropdown
-    	pollDropdown.setItems(FXCollections.observableArrayList(pollNames));
+    	pollDropdown.setItems(FXCollections.observableArrayList(pollIds));
     	
     	// once the user selects a poll to edit from the dropdown
     	pollDropdown.getSelectionModel().selectedIndexProperty().addListener(new ChangeListener<Number>() {
 			@Override
 			public void changed(ObservableValue observable, Number oldValue, Number newValue) {
 				 int index = newValue.intValue();
-				 if (index >= 0) {
-					 pollSelectedToChange = (String)(pollNames.toArray())[index];
-					 
-					 for (Poll poll: pollArray) {
-						 if(poll.getPollName().equals(pollSelectedToChange)) {
-							 Poll selectedPoll = poll;
-							 
-							 // displaying all the parties in dropdown for party to update
-							 Party[] parties = selectedPoll.getParties();
-    						 ArrayList<String> partiesToSelect = new ArrayList<String>();
-    						 
-    						 for (Party p: parties) {
-    					    		String partyInfo = p.toString();
-    					    		partiesToSelect.add(partyInfo);
-    					     }
-    						 
-    						 // setting the values in the dropdown
-    						 partyDropdown.setItems(FXCollections.observableArrayList(partiesToSelect));
-						 }
-					 } 
+				 if (index >= 0 && index < pollIds.size()) {
+					 pollSelectedToChange = pollIds.get(index);
+					 showParties(pollSelectedToChange);
 				 }
 			}
     	});
     }
+    
+    
+    /** showParties() method
+     *  Fills the party dropdown with the ids of the parties in a poll,
+     *  displayed with their current projections
+     *  
+     *  @param pollId the id of the poll whose parties are shown */
+    private void showParties(int pollId) {
+    	Poll selectedPoll = polls.getPollById(pollId);
+    	if (selectedPoll == null) {
+    		return;
+    	}
+    	
+    	ArrayList<Integer> partiesToSelect = new ArrayList<Integer>();
+    	for (Party p: selectedPoll.getParties()) {
+    		partiesToSelect.add(p.getId());
+    	}
+    	partyDropdown.setConverter(new StringConverter<Integer>() {
+			@Override
+			public String toString(Integer partyId) {
+				Party party = partyId == null ? null : selectedPoll.getParty(partyId);
+				return party == null ? "" : party.toString();
+			}
+
+			@Override
+			public Integer fromString(String string) {
+				return null;
+			}
+    	});
+    	
+    	// setting the values in the dropdown
+    	partyDropdown.setItems(FXCollections.observableArrayList(partiesToSelect));
+    }
 
 
     /** setPolls() method
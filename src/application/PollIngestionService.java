@@ -0,0 +1,278 @@
+package application;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.animation.AnimationTimer;
+
+import model.*;
+
+/**
+ * Feeds poll updates from a background source, such as a feed or an import, into the
+ * poll list without holding up the JavaFX thread.
+ * <p>
+ * Updates are queued by <code>submitPartyUpdate</code> and <code>submitPoll</code>, which
+ * can be called on any thread and never wait for the list.  A worker thread takes all
+ * queued updates at once and applies them to the list, which has to be in concurrent
+ * mode so the charts can read it at the same time.  An update of a party that is still
+ * queued replaces the queued one, so a source that sends the same party again and again
+ * only costs one change per batch; these updates are counted as merged.  When the queue
+ * holds <code>capacity</code> updates, new ones are dropped and counted as dropped rather
+ * than letting the queue grow without bound.
+ * <p>
+ * The user interface is not refreshed for every update.  An animation timer checks once
+ * per frame pulse whether anything was applied since the last pulse, and runs the refresh
+ * at most once if so, however many updates came in.  The service listens to the poll list,
+ * so edits made in the user interface, or by anything else, are refreshed the same way.
+ * Changes the list does not tell about can ask for the refresh with
+ * <code>requestRefresh</code>.
+ * <p>
+ * The service does not record the updates in a journal itself.  A poll list that has
+ * a journal set records every change it applies while it holds its write lock, so
+ * updates from the worker and edits made on other threads are recorded in the order
+ * they were applied.
+ *
+ * @author Joshua Lee
+ */
+public class PollIngestionService implements AutoCloseable {
+    /** updates queued before new ones are dropped, unless another capacity is given */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final PollList polls;
+    private final int capacity;
+    private final Thread worker;
+    private final AnimationTimer pulse;
+    // set when the list changed since the last refresh
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // hears of every change to the list, whoever made it
+    private final PollListListener changes = (list, events) -> dirty.set(true);
+
+    // queued updates and counters, guarded by this
+    private LinkedHashMap<Long, PartyUpdate> pendingUpdates = new LinkedHashMap<>();
+    private ArrayDeque<Poll> pendingPolls = new ArrayDeque<>();
+    private boolean closed;
+    private long applied;
+    private long merged;
+    private long dropped;
+    private long refreshes;
+
+
+    /**
+     * Starts the worker thread and the refresh on every frame pulse.  Has to be called on
+     * the JavaFX thread, since the animation timer is started here.
+     *
+     * @param polls the poll list to apply the updates to, in concurrent mode
+     * @param capacity the number of updates that can be queued
+     * @param refresh what to run on the JavaFX thread after updates were applied
+     */
+    public PollIngestionService(PollList polls, int capacity, Runnable refresh) {
+        if (!polls.isConcurrent()) {
+            System.out.println("ERROR: the poll list is not in concurrent mode, it will be put in it.");
+            polls.setConcurrent(true);
+        }
+        this.polls = polls;
+        this.capacity = Math.max(1, capacity);
+        polls.addListener(changes);
+
+        worker = new Thread(this::applyLoop, "poll-ingestion");
+        worker.setDaemon(true);
+        worker.start();
+
+        pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (dirty.getAndSet(false)) {
+                    synchronized (PollIngestionService.this) {
+                        refreshes++;
+                    }
+                    refresh.run();
+                }
+            }
+        };
+        pulse.start();
+    }
+
+
+    /**
+     * submitPartyUpdate() method
+     * Queues new projections of a party in a poll
+     *
+     * @param pollId the id of the poll in the poll list
+     * @param partyName the name of the party
+     * @param seats the projected number of seats
+     * @param percentageOfVotes the projected percentage of votes, between 0 and 1
+     * @return false if the update was dropped because the queue is full or closed, or the party is unknown
+     */
+    public synchronized boolean submitPartyUpdate(int pollId, String partyName, float seats, float percentageOfVotes) {
+        int partyId = PartyRegistry.getInstance().idOf(partyName);
+        if (closed || partyId < 0) {
+            dropped++;
+            return false;
+        }
+        Long key = ((long) pollId << 32) | partyId;
+        PartyUpdate update = new PartyUpdate(pollId, partyId, seats, percentageOfVotes);
+        if (pendingUpdates.put(key, update) != null) {
+            // the queued update had not been applied yet, so only the new one counts
+            merged++;
+        } else if (queued() > capacity) {
+            pendingUpdates.remove(key);
+            dropped++;
+            return false;
+        }
+        notifyAll();
+        return true;
+    }
+
+
+    /**
+     * submitPoll() method
+     * Queues a new poll to add to the end of the poll list
+     *
+     * @param aPoll the poll, which must not be part of another poll list
+     * @return false if the poll was dropped because the queue is full or closed
+     */
+    public synchronized boolean submitPoll(Poll aPoll) {
+        if (closed || aPoll == null || queued() >= capacity) {
+            dropped++;
+            return false;
+        }
+        pendingPolls.add(aPoll);
+        notifyAll();
+        return true;
+    }
+
+
+    /**
+     * requestRefresh() method
+     * Asks for the refresh on the next frame pulse, for changes the poll list does not
+     * tell its listeners about
+     */
+    public void requestRefresh() {
+        dirty.set(true);
+    }
+
+
+    /** @return the number of updates applied to the poll list */
+    public synchronized long getApplied() {
+        return applied;
+    }
+
+
+    /** @return the number of updates replaced by a later update of the same party before they were applied */
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+
+    /** @return the number of updates dropped because the queue was full or closed, or named an unknown party */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+
+    /** @return the number of times the user interface was refreshed */
+    public synchronized long getRefreshes() {
+        return refreshes;
+    }
+
+
+    /**
+     * close() method
+     * Stops taking updates, applies the ones already queued and stops the worker thread,
+     * listening to the poll list and the refresh.  Updates that are applied after the last pulse show up the next
+     * time the user interface is refreshed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        polls.removeListener(changes);
+        pulse.stop();
+    }
+
+
+    private int queued() {
+        return pendingUpdates.size() + pendingPolls.size();
+    }
+
+
+    /**
+     * applyLoop() method
+     * Body of the worker thread: takes everything queued since the last batch and
+     * applies it, one batch at a time, until the service is closed and the queue is empty
+     */
+    private void applyLoop() {
+        while (true) {
+            LinkedHashMap<Long, PartyUpdate> updates;
+            ArrayDeque<Poll> newPolls;
+            synchronized (this) {
+                while (queued() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (queued() == 0) {
+                    return;
+                }
+                // swap in empty queues so updates can be submitted while this batch is applied
+                updates = pendingUpdates;
+                newPolls = pendingPolls;
+                pendingUpdates = new LinkedHashMap<>();
+                pendingPolls = new ArrayDeque<>();
+            }
+
+            // polls first, so updates of a submitted poll find it
+            int count = 0;
+            for (Poll aPoll : newPolls) {
+                polls.addPoll(aPoll);
+                count++;
+            }
+            for (PartyUpdate update : updates.values()) {
+                if (apply(update)) {
+                    count++;
+                }
+            }
+
+            // the list told the listener about the changes, which asked for the refresh
+            synchronized (this) {
+                applied += count;
+            }
+        }
+    }
+
+
+    /**
+     * apply() method
+     * Applies one party update to the poll list, which records it in its journal if it has one
+     *
+     * @return true if the poll list has the poll and party
+     */
+    private boolean apply(PartyUpdate update) {
+        return polls.updateParty(update.pollId, update.partyId, update.seats, update.percentageOfVotes);
+    }
+
+
+    private static final class PartyUpdate {
+        final int pollId;
+        final int partyId;
+        final float seats;
+        final float percentageOfVotes;
+
+        PartyUpdate(int pollId, int partyId, float seats, float percentageOfVotes) {
+            this.pollId = pollId;
+            this.partyId = partyId;
+            this.seats = seats;
+            this.percentageOfVotes = percentageOfVotes;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package application;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.*;
+
+/**
+ * Small HTTP server that lets other local tools query the polls of the application.
+ * It only listens on the loopback address and only answers GET requests:
+ * <pre>
+ * /aggregate                      the aggregate poll as JSON
+ * /aggregate/text?by=seats|votes  the text visualization of the aggregate poll
+ * /polls                          the whole poll list as JSON, streamed poll by poll
+ * /polls/ID                       one poll as JSON
+ * /polls/ID/text?by=seats|votes   the text visualization of one poll
+ * </pre>
+ * The aggregate covers the parties of the first poll, like the visualize view, unless
+ * they are given as <code>?parties=A,B,C</code>.  JSON is written by
+ * <code>PollListJson</code>, so it has the same layout as an exported file.
+ * <p>
+ * Every request runs on its own thread, never on the JavaFX thread.  On a JDK with
+ * virtual threads each request gets a virtual thread, so thousands of slow clients
+ * only cost memory; older JDKs fall back to a fixed pool of platform threads.
+ * The application puts the poll list in concurrent mode, so requests read it
+ * optimistically and only wait for an edit that is made at the same time; every poll
+ * in an answer is read as a whole, before or after an edit.  The aggregate comes from
+ * the running totals of the list, so it takes no longer with more polls.  An edit made
+ * while the whole list is streamed may or may not show up in the answer.
+ *
+ * @author Joshua Lee
+ */
+public class PollQueryServer implements AutoCloseable {
+    /** port the application serves on unless the polltracker.http.port property is set */
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final int MAX_STARS = 18;
+    // connections the operating system queues while all threads are busy
+    private static final int BACKLOG = 4096;
+    private static final int FALLBACK_THREADS_PER_PROCESSOR = 8;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Supplier<PollList> polls;
+
+
+    /**
+     * Starts a server on the loopback address.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param polls gives the poll list to answer from, so the application can replace it
+     * @throws IOException if the port can't be opened
+     */
+    public PollQueryServer(int port, Supplier<PollList> polls) throws IOException {
+        this.polls = polls;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+
+    /**
+     * getPort() method
+     *
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * close() method
+     * Stops accepting requests, gives the ones in progress a second to finish and
+     * stops the threads
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+
+    /**
+     * newExecutor() method
+     * Creates an executor that starts a virtual thread per request if the JDK has
+     * them.  It is looked up by reflection, since the application is also built for
+     * JDKs without virtual threads.
+     *
+     * @return the executor to run requests on
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // no virtual threads, or only as a preview that is not turned on
+            return Executors.newFixedThreadPool(FALLBACK_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task, "poll-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+
+    /**
+     * handle() method
+     * Answers one request, or with an error status if it can't be answered
+     *
+     * @param exchange the request and its response
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendText(exchange, 405, "Only GET requests are answered.\n");
+                return;
+            }
+            PollList list = polls.get();
+            if (list == null) {
+                sendText(exchange, 503, "There are no polls yet.\n");
+                return;
+            }
+
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String query = exchange.getRequestURI().getRawQuery();
+            if (path.length == 2 && path[1].equals("aggregate")) {
+                StringBuilder body = new StringBuilder();
+                PollListJson.writePoll(aggregate(list, query), -1, body);
+                sendJson(exchange, body.append('\n'));
+            } else if (path.length == 3 && path[1].equals("aggregate") && path[2].equals("text")) {
+                sendVisualization(exchange, list, aggregate(list, query), query);
+            } else if (path.length == 2 && path[1].equals("polls")) {
+                // the whole list is streamed, so it is never built in memory
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+                PollListJson.write(list, out);
+                out.flush();
+            } else if ((path.length == 3 || path.length == 4 && path[3].equals("text")) && path[1].equals("polls")) {
+                int pollId;
+                try {
+                    pollId = Integer.parseInt(path[2]);
+                } catch (NumberFormatException e) {
+                    sendText(exchange, 400, path[2] + " is not a poll id.\n");
+                    return;
+                }
+                Poll aPoll = list.getPollSnapshot(pollId);
+                if (aPoll == null) {
+                    sendText(exchange, 404, "There is no poll with id " + pollId + ".\n");
+                } else if (path.length == 4) {
+                    sendVisualization(exchange, list, aPoll, query);
+                } else {
+                    StringBuilder body = new StringBuilder();
+                    PollListJson.writePoll(aPoll, pollId, body);
+                    sendJson(exchange, body.append('\n'));
+                }
+            } else {
+                sendText(exchange, 404, "Unknown path, use /aggregate, /aggregate/text, /polls, /polls/ID or /polls/ID/text.\n");
+            }
+        } catch (RuntimeException e) {
+            // the response may already have started, in which case closing it is all that is left
+            System.err.println("ERROR: a query could not be answered: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * aggregate() method
+     * Gets the aggregate of the parties named in the query, or of the parties of the
+     * first poll
+     */
+    private static Poll aggregate(PollList list, String query) {
+        String parties = parameter(query, "parties");
+        String[] names;
+        if (parties != null) {
+            names = parties.split(",");
+        } else {
+            // a snapshot, so the parties can't change while they are read, or null if the
+            // list is empty or the first poll was removed in between
+            Poll firstPoll = null;
+            try {
+                firstPoll = list.getPollSnapshot(list.getPollId(0));
+            } catch (IndexOutOfBoundsException e) {
+                // the list is empty
+            }
+            Party[] firstParties = firstPoll == null ? new Party[0] : firstPoll.getParties();
+            int count = 0;
+            names = new String[firstParties.length];
+            for (Party aParty : firstParties) {
+                if (aParty != null) {
+                    names[count++] = aParty.getName();
+                }
+            }
+            names = Arrays.copyOf(names, count);
+        }
+        return list.getAggregatePoll(names);
+    }
+
+
+    /**
+     * sendVisualization() method
+     * Answers with the text visualization of a poll by seats, or by votes if the query
+     * asks for it, scaled like the visualizations of the poll list
+     */
+    private static void sendVisualization(HttpExchange exchange, PollList list, Poll aPoll, String query) throws IOException {
+        String by = parameter(query, "by");
+        StringBuilder body = new StringBuilder();
+        if (by == null || by.equalsIgnoreCase("seats")) {
+            aPoll.textVisualizationBySeats(body, MAX_STARS, Math.ceil((float) list.getNumOfSeats() / MAX_STARS));
+        } else if (by.equalsIgnoreCase("votes")) {
+            aPoll.textVisualizationByVotes(body, MAX_STARS, Math.ceil(100.0 / MAX_STARS));
+        } else {
+            sendText(exchange, 400, "The visualization has to be by seats or by votes.\n");
+            return;
+        }
+        sendText(exchange, 200, body);
+    }
+
+
+    /**
+     * parameter() method
+     * Finds the value of a parameter in a query string
+     *
+     * @return the decoded value, or null if the parameter is not in the query
+     */
+    private static String parameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            if (URLDecoder.decode(key, StandardCharsets.UTF_8).equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+
+    private static void sendJson(HttpExchange exchange, CharSequence body) throws IOException {
+        send(exchange, 200, "application/json; charset=utf-8", body);
+    }
+
+
+    private static void sendText(HttpExchange exchange, int status, CharSequence body) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", body);
+    }
+
+
+    /**
+     * send() method
+     * Answers with a body that was built in memory, so its length is sent up front
+     */
+    private static void send(HttpExchange exchange, int status, String contentType, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -3,12 +3,17 @@ package application;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.stage.Stage;
 
+import model.PollJournal;
 import model.PollList;
+import model.PollListSnapshot;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Tab;
@@ -27,6 +32,15 @@ public class PollTrackerApp extends Application {
 	Stage primaryStage;
 	//polls instance variable will be set to the updated factory singleton instance
 	static  PollList polls;
+	//the polls are saved as a snapshot of the last checkpoint plus a journal of the edits made since
+	static final Path SNAPSHOT_FILE = Paths.get("polls.snapshot");
+	static final Path JOURNAL_FILE = Paths.get("polls.journal");
+	//journal the edits are recorded in, null if it could not be opened
+	static PollJournal journal;
+	//server that answers queries from other local tools, null if it is not running
+	static PollQueryServer queryServer;
+	//applies updates from background sources and refreshes the charts once per frame, null before the polls are shown
+	static PollIngestionService ingestion;
 	
 	/**
 	 * setupView Method loads the SetupView controller class and sets the <code>primaryStage</code>
@@ -67,6 +81,12 @@ public class PollTrackerApp extends Application {
 	void pollView() {
 		FXMLLoader loader = new FXMLLoader();
 		Scene scene;
+		openJournal();
+		//the query server reads the polls on its own threads while they are edited here
+		if (!polls.isConcurrent()) {
+			polls.setConcurrent(true);
+		}
+		startQueryServer();
 
 		try {
 			//load the EditPollView fxml file and its controller class, and create a tab where it is displayed
@@ -84,6 +104,11 @@ public class PollTrackerApp extends Application {
 			visualizePollController.start();
 			//link the controllers together
 			editPollController.connector(this, visualizePollController);
+			//updates from background sources, and edits, refresh the charts at most once per frame
+			if (ingestion != null) {
+				ingestion.close();
+			}
+			ingestion = new PollIngestionService(polls, PollIngestionService.DEFAULT_CAPACITY, visualizePollController::start);
 			//display the tabs
 			TabPane root = new TabPane(editView, visualizeView);
 			//set the scene
@@ -115,9 +140,136 @@ public class PollTrackerApp extends Application {
 	@Override
 	public void start(Stage primaryStage) {
 		this.primaryStage = primaryStage;
+		//continue with the saved polls if there are any, otherwise set up new ones
+		if (restorePolls()) {
+			pollView();
+		} else {
+			setupView();
+		}
+	}
+	
+	/**
+	 * restorePolls method
+	 * loads the polls saved by the last run: the snapshot, with the journal of the edits made since replayed on top
+	 * Precondition: none
+	 * Postcondition: <code>polls</code> will be set to the saved polls if there are any
+	 * 
+	 * @return true if saved polls were loaded
+	 */
+	private boolean restorePolls() {
+		if (!Files.exists(SNAPSHOT_FILE)) {
+			return false;
+		}
+		try {
+			PollList saved = PollListSnapshot.load(SNAPSHOT_FILE);
+			int edits = PollJournal.replay(JOURNAL_FILE, saved);
+			System.out.println("Loaded " + saved.size() + " polls and " + edits + " edits from " + SNAPSHOT_FILE);
+			polls = saved;
+			return true;
+		}
+		catch (IOException e) {
+			System.out.println("ERROR: the saved polls could not be loaded: " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * openJournal method
+	 * opens the journal that edits are recorded in, and saves a snapshot of <code>polls</code> to start it from
+	 * Precondition: <code>polls</code> must be set
+	 * Postcondition: <code>journal</code> will be open, or null if it could not be opened
+	 */
+	private void openJournal() {
+		if (journal != null) {
+			return;
+		}
+		try {
+			journal = PollJournal.open(JOURNAL_FILE);
+			journal.checkpoint(polls, SNAPSHOT_FILE);
+			//the polls record every change made through them, in the order the changes were made
+			polls.setJournal(journal);
+		}
+		catch (IOException e) {
+			System.out.println("ERROR: edits will not be saved, the journal could not be opened: " + e.getMessage());
+			journal = null;
+		}
+	}
+	
+	/**
+	 * closeJournal method
+	 * stops the ingestion of updates, saves a snapshot of <code>polls</code> and closes the journal
+	 * Precondition: none
+	 * Postcondition: the ingestion is stopped, and the polls are saved and the journal is empty and closed
+	 */
+	private void closeJournal() {
+		//the queued updates are applied before the checkpoint, so none is left out of it
+		if (ingestion != null) {
+			ingestion.close();
+			ingestion = null;
+		}
+		if (journal == null) {
+			return;
+		}
+		polls.setJournal(null);
+		try {
+			journal.checkpoint(polls, SNAPSHOT_FILE);
+			journal.close();
+		}
+		catch (IOException e) {
+			System.out.println("ERROR: the polls could not be saved: " + e.getMessage());
+		}
+		journal = null;
+	}
+	
+	/**
+	 * newPolls method
+	 * saves the current polls and goes back to the setup view to set up new ones. The saved polls
+	 * are only replaced once the new polls are set up, so they are loaded again if the application exits before that
+	 * Precondition: none
+	 * Postcondition: the journal is closed and SetupView will be loaded
+	 */
+	void newPolls() {
+		closeJournal();
 		setupView();
 	}
 	
+	/**
+	 * startQueryServer method
+	 * starts the server that answers queries about <code>polls</code> from other local tools,
+	 * on the port of the polltracker.http.port property or the default port. A negative port turns it off
+	 * Precondition: none
+	 * Postcondition: <code>queryServer</code> will be running, or null if it could not be started
+	 */
+	private void startQueryServer() {
+		int port = Integer.getInteger("polltracker.http.port", PollQueryServer.DEFAULT_PORT);
+		if (queryServer != null || port < 0) {
+			return;
+		}
+		try {
+			//the server reads the static polls, so it follows when they are replaced
+			queryServer = new PollQueryServer(port, () -> polls);
+			System.out.println("Answering queries on http://localhost:" + queryServer.getPort() + "/");
+		}
+		catch (IOException e) {
+			System.out.println("ERROR: the query server could not be started: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * stop method
+	 * stops the query server and the ingestion of updates, saves a snapshot of the polls and closes the journal when the application exits
+	 * Precondition: none
+	 * Postcondition: the server and the ingestion are stopped, and the polls are saved and the journal is empty and closed
+	 */
+	@Override
+	public void stop() {
+		if (queryServer != null) {
+			queryServer.close();
+			queryServer = null;
+		}
+		closeJournal();
+	}
+	
 	/**
 	 * main method for the PollTrackerApp class
 	 * launches the application
@@ -0,0 +1,217 @@
+package application;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import javafx.scene.paint.Color;
+import model.*;
+
+/**
+ * Headless driver that puts the whole model under load and reports how it holds up.
+ * It generates a poll list with the <code>Factory</code>, then runs a stream of
+ * operations at a fixed rate.  Each operation edits a random party in a random poll,
+ * aggregates the list and renders the aggregate as text, like a user editing a poll
+ * and looking at the result.
+ * <p>
+ * Throughput and latency percentiles are reported for each stage.  Operations are
+ * scheduled at fixed times, and the end to end latency is measured from the time an
+ * operation was due rather than the time it started, so a slow stage also shows up in
+ * the latency of the operations queued behind it.
+ * <p>
+ * No window is opened, so it runs on machines without a display.  Usage:
+ * <pre>
+ * java application.ScaleTest [--polls N] [--parties N] [--rate OPS_PER_SECOND]
+ *                            [--operations N] [--seed N] [--columnar]
+ * </pre>
+ *
+ * @author Joshua Lee
+ */
+public class ScaleTest {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /** settings of the run, with their defaults */
+    private int numberOfPolls = 100000;
+    private int numberOfParties = 7;
+    private int rate = 1000;
+    private int operations = 10000;
+    private long seed = 219;
+    private boolean columnar;
+
+
+    /**
+     * main() method
+     * Reads the settings from the arguments, runs the test and prints the report
+     *
+     * @param args the settings, see the class description
+     */
+    public static void main(String[] args) {
+        ScaleTest test = new ScaleTest();
+        if (test.readArguments(args)) {
+            test.run();
+        }
+    }
+
+
+    /**
+     * readArguments() method
+     * Reads the settings of the run from the command line arguments
+     *
+     * @param args the arguments
+     * @return true if all arguments were valid
+     */
+    private boolean readArguments(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "--polls": numberOfPolls = Integer.parseInt(args[++i]); break;
+                case "--parties": numberOfParties = Integer.parseInt(args[++i]); break;
+                case "--rate": rate = Integer.parseInt(args[++i]); break;
+                case "--operations": operations = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--columnar": columnar = true; break;
+                default:
+                    System.out.println("ERROR: unknown argument " + args[i]);
+                    return false;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("ERROR: every setting needs a whole number after it.");
+            return false;
+        }
+        if (numberOfPolls < 1 || numberOfParties < 1 || rate < 1 || operations < 1) {
+            System.out.println("ERROR: the number of polls, parties, operations and the rate must be at least 1.");
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * run() method
+     * Builds the poll list, runs the operations and prints the report
+     */
+    private void run() {
+        System.out.println("Scale test: " + numberOfPolls + " polls, " + numberOfParties + " parties, "
+                + operations + " operations at " + rate + "/s" + (columnar ? ", columnar" : "") + "\n");
+
+        // set up the election
+        String[] names = new String[numberOfParties];
+        Color[] colours = new Color[numberOfParties];
+        for (int i = 0; i < numberOfParties; i++) {
+            names[i] = "Party" + i;
+            colours[i] = Color.hsb(360.0 * i / numberOfParties, 0.8, 0.8);
+        }
+        Factory factory = Factory.getInstance();
+        factory.setPartyIdentifiers(names, colours);
+        factory.setNumOfSeats(Factory.DEFAULT_NUMBER_OF_SEATS);
+
+        // one off stages: generate the polls, load them into a list and render the whole list
+        long start = System.nanoTime();
+        Poll[] generated = factory.createRandomPolls(numberOfPolls, seed);
+        reportOnce("generate", System.nanoTime() - start, numberOfPolls);
+
+        start = System.nanoTime();
+        PollList polls = columnar ? new PollList(numberOfPolls, Factory.DEFAULT_NUMBER_OF_SEATS, names, colours)
+                : new PollList(numberOfPolls, Factory.DEFAULT_NUMBER_OF_SEATS);
+        polls.addAll(generated);
+        generated = null;
+        reportOnce("load", System.nanoTime() - start, numberOfPolls);
+
+        start = System.nanoTime();
+        try {
+            polls.textVisualizationBySeats(Writer.nullWriter());
+        } catch (IOException e) {
+            System.out.println("ERROR: rendering failed: " + e.getMessage());
+        }
+        reportOnce("render list", System.nanoTime() - start, numberOfPolls);
+
+        // the stream of operations
+        long[] edit = new long[operations];
+        long[] aggregate = new long[operations];
+        long[] render = new long[operations];
+        long[] endToEnd = new long[operations];
+        int[] partyIds = new int[numberOfParties];
+        for (int i = 0; i < numberOfParties; i++) {
+            partyIds[i] = PartyRegistry.getInstance().idOf(names[i]);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder out = new StringBuilder();
+        long interval = 1_000_000_000L / rate;
+        int checksum = 0;
+
+        long begin = System.nanoTime();
+        for (int op = 0; op < operations; op++) {
+            // wait until the operation is due
+            long due = begin + op * interval;
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+
+            int index = random.nextInt(polls.size());
+            int partyId = partyIds[random.nextInt(numberOfParties)];
+            polls.updateParty(polls.getPollId(index), partyId,
+                    random.nextInt(polls.getNumOfSeats() / numberOfParties + 1), random.nextInt(100 / numberOfParties + 1) / 100.0f);
+            long edited = System.nanoTime();
+
+            Poll aggregatePoll = polls.getAggregatePoll(names);
+            long aggregated = System.nanoTime();
+
+            out.setLength(0);
+            try {
+                aggregatePoll.textVisualizationBySeats(out, 18, Math.ceil(polls.getNumOfSeats() / 18.0));
+            } catch (IOException e) {
+                // a StringBuilder never throws
+            }
+            checksum += out.length();
+            long rendered = System.nanoTime();
+
+            edit[op] = edited - now;
+            aggregate[op] = aggregated - edited;
+            render[op] = rendered - aggregated;
+            endToEnd[op] = rendered - due;
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        System.out.println();
+        System.out.printf("%-12s %12s %10s %10s %10s %10s %10s%n", "stage", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        reportLatencies("edit", edit);
+        reportLatencies("aggregate", aggregate);
+        reportLatencies("render", render);
+        reportLatencies("end to end", endToEnd);
+        System.out.printf("%nachieved %.0f ops/s of %d targeted (rendered %d characters)%n",
+                operations * 1e9 / elapsed, rate, checksum);
+    }
+
+
+    /**
+     * reportOnce() method
+     * Prints the time and throughput of a stage that runs once over all polls
+     */
+    private void reportOnce(String stage, long nanos, int items) {
+        System.out.printf("%-12s %10.1f ms %14.0f polls/s%n", stage, nanos / 1e6, items * 1e9 / Math.max(1, nanos));
+    }
+
+
+    /**
+     * reportLatencies() method
+     * Prints the throughput of a stage and the percentiles of its latencies
+     */
+    private void reportLatencies(String stage, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long n : sorted) {
+            total += n;
+        }
+        System.out.printf("%-12s %12.0f", stage, sorted.length * 1e9 / Math.max(1, total));
+        for (double percentile : PERCENTILES) {
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            System.out.printf(" %10.1f", sorted[Math.max(0, index)] / 1e3);
+        }
+        System.out.printf(" %10.1f%n", sorted[sorted.length - 1] / 1e3);
+    }
+}
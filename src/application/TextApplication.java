@@ -1,6 +1,17 @@
 package application;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
 import java.util.Scanner;
+import java.util.function.IntFunction;
 
 import javafx.scene.paint.Color;
 import model.*;
@@ -9,6 +20,22 @@ import model.*;
  * This class represents the entire application and pulls together
  * all other classes.
  * 
+ * Without arguments it asks for the election and the polls and shows the
+ * visualizations the user picks.  With arguments it runs as a batch job:
+ * it reads the polls from a file, writes the visualization of every poll
+ * followed by the aggregate, and exits without asking anything.  Usage:
+ * <pre>
+ * java application.TextApplication --input FILE [--format csv|json|snapshot|archive]
+ *                                  [--seats N] [--by seats|votes] [--parties A,B,C]
+ *                                  [--output FILE] [--aggregate-only]
+ * </pre>
+ * The format is taken from the file extension (.csv, .json, .snapshot or
+ * .archive) unless it is given.  The seats are only used for CSV files,
+ * the aggregate covers all parties unless they are given, and the output
+ * goes to the console unless a file is given.  Errors and other messages go
+ * to the error stream, so they never mix with the output, and a run that
+ * fails exits with status 1.
+ * 
  * @author Jaza Khan
  * @author Richi Patel
  * @author Joshua Lee
@@ -17,8 +44,15 @@ import model.*;
 
 public class TextApplication {
 
+    /** largest number of stars in a bar of a visualization */
+    private static final int MAX_STARS = 18;
+    /** size of the output buffer of the batch mode */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** instance variables */
     private PollList polls;
+    /** one scanner for all prompts, so input piped in is not lost between them */
+    private final Scanner input = new Scanner(System.in);
 
 
     /**
@@ -98,7 +132,7 @@ public class TextApplication {
     public void promptForPollList(String[] partyNames) {
         System.out.println("\nPlease enter the name of each poll (provide names, comma separated):");
         
-        Scanner sc = new Scanner(System.in);
+        Scanner sc = input;
         String inputPollNames = sc.nextLine();
 
         // separate the above input and store the poll names in an array 
@@ -133,7 +167,7 @@ public class TextApplication {
      * uses the visualization methods to display the polls created.
      */ 
     public void run() {
-        Scanner userInput = new Scanner(System.in);
+        Scanner userInput = input;
 
         System.out.println("Welcome to the poll tracker");
         System.out.println("\nHow many seats are available in the election?");
@@ -180,26 +214,43 @@ public class TextApplication {
 
      /**
      * displayHelper() method
-     * Gets number of seats in a poll and then adds the poll to PollList 
-     * object privPoll. Then prints out appropriate visualization
+     * Prints out the appropriate visualization of a poll
      * 
-     * @param aPoll gets number of seats of this poll then adds it to polls
+     * @param aPoll the poll to visualize
      * @param choice a String that stores the user's choice of either seats or votes
      */
     private void displayHelper(Poll aPoll, String choice) {
-        // get number of seats for aPoll
-        int numberOfSeats = countPollSeats(aPoll);
+        StringBuilder visualization = new StringBuilder();
+        try {
+            writeVisualization(visualization, aPoll, choice);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+        }
+        System.out.print(visualization);
+    }
 
-        // create local PollList object privPoll
-        PollList privPoll = new PollList(1, numberOfSeats);
-        privPoll.addPoll(aPoll);
 
-        // print out correct visualization
+     /**
+     * writeVisualization() method
+     * Writes the visualization of a poll by seats or votes, scaled to the
+     * seats in the poll, followed by a blank line
+     * 
+     * @param out where to write the visualization
+     * @param aPoll the poll to visualize
+     * @param choice a String that stores the choice of either seats or votes
+     * @throws IOException if writing to out fails
+     */
+    private void writeVisualization(Appendable out, Poll aPoll, String choice) throws IOException {
         if (choice.equalsIgnoreCase("seats")) {
-            System.out.println(privPoll.textVisualizationBySeats());
+            // like a poll list, a poll without seats is drawn as if it had 10
+            int numberOfSeats = countPollSeats(aPoll);
+            double numSeatsPerStar = Math.ceil((float) (numberOfSeats >= 1 ? numberOfSeats : 10) / MAX_STARS);
+            aPoll.textVisualizationBySeats(out, MAX_STARS, numSeatsPerStar);
+            out.append("\n\n");
         }
         else if (choice.equalsIgnoreCase("votes")) {
-            System.out.println(privPoll.textVisualizationByVotes());
+            aPoll.textVisualizationByVotes(out, MAX_STARS, Math.ceil(100.0 / MAX_STARS));
+            out.append("\n\n");
         }
     }
 
@@ -248,20 +299,8 @@ public class TextApplication {
      * @param choice a String that stores the user's choice of either seats or votes
      */
     private void createAggPoll(String[] partyNames, String choice) {
-        // create new Poll object to separately store the aggregate poll
-        Poll aggregatePoll = polls.getAggregatePoll(partyNames);
-
-        // create new helper PollList object to store aggPoll
-        PollList help = new PollList(1, countPollSeats(aggregatePoll));
-        help.addPoll(aggregatePoll);
-
-        // visualize the helper poll accordingly
-        if (choice.equalsIgnoreCase("seats")) {
-            System.out.println(help.textVisualizationBySeats());
-        } 
-        else if (choice.equalsIgnoreCase("votes")) {
-            System.out.println(help.textVisualizationByVotes());
-        }
+        // visualize the aggregate poll like any other poll
+        displayHelper(polls.getAggregatePoll(partyNames), choice);
     }
 
 
@@ -273,7 +312,7 @@ public class TextApplication {
      * @return the user response received from Scanner object
      */
     private String askForVisualizationChoice() {
-        Scanner sc = new Scanner(System.in);
+        Scanner sc = input;
         System.out.println("\nWould you like to visualize by seats or by votes?");
         String bySeatsOrVotes = sc.nextLine();
         
@@ -292,8 +331,10 @@ public class TextApplication {
     	int numberOfSeats = 0;
 
     	// adds up the projected number of seats of a party to get the total seats in the poll
-    	for (int i = 0; i < (aPoll.getNumberOfParties()); i++) {
-            numberOfSeats += aPoll.getParties()[i].getProjectedNumberOfSeats();
+    	for (Party aParty : aPoll.getParties()) {
+            if (aParty != null) {
+                numberOfSeats += aParty.getProjectedNumberOfSeats();
+            }
         }
 
     	return numberOfSeats;
@@ -309,7 +350,7 @@ public class TextApplication {
      * @param partyNames the names of all parties in the election
      */
     private void loopVisualization(String[] partyNames) {
-        Scanner sc = new Scanner(System.in);
+        Scanner sc = input;
         boolean endApp = false;
         
         do {
@@ -335,8 +376,163 @@ public class TextApplication {
 
     }
 
+    /**
+     * runBatch() method
+     * Reads the polls from a file and writes the visualization of every poll
+     * and of the aggregate, as described in the class description
+     * 
+     * @param args the command line arguments
+     * @return true if the visualizations were written
+     */
+    public boolean runBatch(String[] args) {
+        // the model prints its messages to System.out, so they go to the error
+        // stream while the visualizations are written to the console
+        PrintStream console = System.out;
+        System.setOut(System.err);
+        try {
+            return runBatch(args, console);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * runBatch() method
+     * Does the batch run, writing the visualizations to the console unless a file is given
+     * 
+     * @param args the command line arguments
+     * @param console the console to write the visualizations to
+     * @return true if the visualizations were written
+     */
+    private boolean runBatch(String[] args, PrintStream console) {
+        Path inputFile = null;
+        Path outputFile = null;
+        String format = null;
+        String choice = "seats";
+        String[] partyNames = null;
+        int seats = Factory.DEFAULT_NUMBER_OF_SEATS;
+        boolean aggregateOnly = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "--input": inputFile = Paths.get(args[++i]); break;
+                case "--output": outputFile = Paths.get(args[++i]); break;
+                case "--format": format = args[++i].toLowerCase(); break;
+                case "--seats": seats = Integer.parseInt(args[++i]); break;
+                case "--by": choice = args[++i]; break;
+                case "--parties": partyNames = args[++i].split(","); break;
+                case "--aggregate-only": aggregateOnly = true; break;
+                default:
+                    System.err.println("ERROR: unknown argument " + args[i]);
+                    return false;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("ERROR: every option except --aggregate-only needs a value, and --seats a whole number.");
+            return false;
+        }
+        if (inputFile == null) {
+            System.err.println("ERROR: the file to read the polls from has to be given with --input.");
+            return false;
+        }
+        if (!choice.equalsIgnoreCase("seats") && !choice.equalsIgnoreCase("votes")) {
+            System.err.println("ERROR: the visualization has to be by seats or by votes.");
+            return false;
+        }
+        if (format == null) {
+            String fileName = inputFile.getFileName().toString();
+            format = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        }
+
+        PollArchive archive = null;
+        boolean written = false;
+        try {
+            // read the polls; an archive is read where it is instead of being loaded
+            IntFunction<Poll> pollAt;
+            int numberOfPolls;
+            switch (format) {
+            case "csv": polls = new PollCsvImporter().importFile(inputFile, seats); break;
+            case "json": polls = PollListJson.load(inputFile); break;
+            case "snapshot": polls = PollListSnapshot.load(inputFile); break;
+            case "archive": archive = PollArchive.open(inputFile); break;
+            default:
+                System.err.println("ERROR: unknown format " + format + ", use csv, json, snapshot or archive.");
+                return false;
+            }
+            if (archive != null) {
+                pollAt = archive::getPoll;
+                numberOfPolls = archive.size();
+            } else {
+                pollAt = polls::getPoll;
+                numberOfPolls = polls.size();
+            }
+
+            if (partyNames == null) {
+                // all parties, in the order they first appear
+                LinkedHashSet<String> names = new LinkedHashSet<>();
+                for (int i = 0; i < numberOfPolls; i++) {
+                    for (Party aParty : pollAt.apply(i).getParties()) {
+                        if (aParty != null) {
+                            names.add(aParty.getName());
+                        }
+                    }
+                }
+                partyNames = names.toArray(new String[0]);
+            }
+
+            Writer out = outputFile == null
+                    ? new BufferedWriter(new OutputStreamWriter(console, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE)
+                    : Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8);
+            try {
+                if (!aggregateOnly) {
+                    for (int i = 0; i < numberOfPolls; i++) {
+                        writeVisualization(out, pollAt.apply(i), choice);
+                    }
+                }
+                Poll aggregatePoll = archive != null ? archive.getAggregatePoll(partyNames) : polls.getAggregatePoll(partyNames);
+                writeVisualization(out, aggregatePoll, choice);
+            } finally {
+                // the console stays open, a file is closed
+                if (outputFile == null) {
+                    out.flush();
+                } else {
+                    out.close();
+                }
+            }
+            // the console does not throw when it can't be written, such as a full disk it was redirected to
+            if (outputFile == null && console.checkError()) {
+                System.err.println("ERROR: the batch run failed: the visualizations could not be written to the console.");
+            } else {
+                written = true;
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: the batch run failed: " + e);
+        } finally {
+            if (archive != null) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    System.err.println("ERROR: " + e.getMessage());
+                    written = false;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * main() method
+     * Runs the batch mode if there are arguments, and asks the user otherwise.
+     * A batch run that fails exits with status 1.
+     * 
+     * @param args the options of the batch mode, see the class description
+     */
     public static void main(String[] args) {
         TextApplication textApp = new TextApplication();
-        textApp.run();
+        if (args.length == 0) {
+            textApp.run();
+        } else if (!textApp.runBatch(args)) {
+            System.exit(1);
+        }
     }
 }
\ No newline at end of file
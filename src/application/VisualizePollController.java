@@ -3,13 +3,22 @@ package application;
 import model.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.chart.PieChart;
+import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.TextArea;
+import javafx.scene.paint.Color;
 
 /**
  * The Controller class which visualizes a specified Poll from a PollList
@@ -18,6 +27,9 @@ import javafx.scene.control.ChoiceBox;
  *
  */
 public class VisualizePollController {
+    //simulator shared by all simulations, its threads are daemons so they don't keep the app open
+    private static final MajoritySimulator simulator = new MajoritySimulator();
+    
     PollList polls;
     //PieChart instance variable representing the projected seats pie chart
     @FXML
@@ -28,65 +40,123 @@ public class VisualizePollController {
     //choice box instance variable with options of which poll to display on the charts
     @FXML
     private ChoiceBox<String> vizChoice;
+    //button that starts a simulation of the election from the polls
+    @FXML
+    private Button simulateButton;
+    //text area showing the outcome of the last simulation
+    @FXML
+    private TextArea simulationResults;
+    //simulation that is running, if any
+    private Task<SimulationResult> simulation;
+    //slices on the PieCharts by party name, kept between updates so only changed slices are touched
+    private final HashMap<String, PieChart.Data> seatSlices = new HashMap<String, PieChart.Data>();
+    private final HashMap<String, PieChart.Data> voteSlices = new HashMap<String, PieChart.Data>();
+    //style of the slices of each party, computed once
+    private final HashMap<String, String> partyStyles = new HashMap<String, String>();
     
     /**
      * initialize method
-     * Used to add choices to the choice box created in scene builder, and change PieChart display
+     * Called once when the view is loaded, before the polls are set. Hides the legends and
+     * registers the one listener that charts the option selected in the choice box.
      * 
      * Precondition: none
-     * Postcondition: All the polls names in the <code>polls</code> instance variable are added
-     * to the options in the choice box, along with the aggregate Poll for that PollList.
-     * PieCharts will visualize the data for the selected Poll in the choice box by seats and by votes.
-     * the choice box will select aggregate by default, and the PieCharts will display the aggregate
-     * Poll by default. If a different Poll is selected, the PieCharts will display data for that poll
+     * Postcondition: Selecting an option in the choice box displays its poll on the PieCharts
      */
     @FXML
-    void start() {
-    	//set the default selected option to "Aggregate Poll" and display the Aggregate Poll on the PieCharts by default using the chartCreationHelper method.
-    	vizChoice.setValue("Aggregate Poll");
-    	//create the name String array for the aggregate poll
-    	String[] names = new String[polls.toArray()[0].getNumberOfParties()];
-    	for(int i = 0; i < polls.toArray()[0].getNumberOfParties(); i++) {
-    		names[i] = polls.toArray()[0].getParties()[i].getName();
-    	}
-    	Poll aggregate = polls.getAggregatePoll(names);
-    	
-		chartCreationHelper(aggregate);
-		//Create the String array of Poll names to be options in the choice box, with the first being the Aggregate Poll
-    	String[] visualizationOptions = new String[polls.toArray().length + 1];
-    	visualizationOptions[0] = "Aggregate Poll";
-    	
-    	for(int i = 1; i <= polls.toArray().length; i++) {
-    		//add the names of each Poll in the polls PollList to the String array
-    		visualizationOptions[i] = polls.toArray()[i-1].getPollName();
-    	}
-
-    	//set the visualizations String array as the options for the choice box
-    	vizChoice.setItems(FXCollections.observableArrayList(visualizationOptions));
+    void initialize() {
+    	seatsChart.setLegendVisible(false);
+    	votesChart.setLegendVisible(false);
     	
     	//check for when choice box selected option is changed
     	vizChoice.getSelectionModel().selectedIndexProperty().addListener(
     		new ChangeListener<Number>() {
 	    		@Override
 	    		public void changed(ObservableValue observable, Number oldValue, Number newValue) {
-	    			int index = newValue.intValue();
-	    			
-	    			//change chart data to the selected option in the choice box using chartCreationHelper method to display the data on the PieCharts
-	    			if(index > 0) {
-	    				Poll pollToChart = polls.toArray()[index - 1];
-	    				chartCreationHelper(pollToChart);
-	    			}
-	    			else if (index == 0) {
-	    				chartCreationHelper(aggregate);
-	    			}
+	    			showOption(newValue.intValue());
 	    		}
     		}
     	);
     }
     
+    /**
+     * start method
+     * Used to add choices to the choice box created in scene builder, and change PieChart display
+     * 
+     * Precondition: none
+     * Postcondition: All the polls names in the <code>polls</code> instance variable are added
+     * to the options in the choice box, along with the aggregate Poll for that PollList and
+     * the aggregate of its most recent polls.
+     * PieCharts will visualize the data for the selected Poll in the choice box by seats and by votes.
+     * the choice box will select aggregate when nothing else is selected, and the PieCharts will
+     * display the selected Poll with its current data. Calling it again after the polls changed
+     * keeps the selection and only changes the slices whose values changed.
+     */
+    @FXML
+    void start() {
+    	//Create the list of Poll names to be options in the choice box, with the first being the Aggregate Poll
+    	//and the second the aggregate of the most recent polls
+    	ArrayList<String> visualizationOptions = new ArrayList<String>(polls.size() + 2);
+    	visualizationOptions.add("Aggregate Poll");
+    	visualizationOptions.add("Aggregate (last " + polls.getRollingWindow() + ")");
+    	for(int i = 0; i < polls.size(); i++) {
+    		//add the names of each Poll in the polls PollList to the list
+    		visualizationOptions.add(polls.getPoll(i).getPollName());
+    	}
+    	
+    	//replacing the options clears the selection, so they are only replaced when they changed
+    	int selected = vizChoice.getSelectionModel().getSelectedIndex();
+    	if (!visualizationOptions.equals(vizChoice.getItems())) {
+    		vizChoice.setItems(FXCollections.observableArrayList(visualizationOptions));
+    	}
+    	if (selected < 0 || selected >= visualizationOptions.size()) {
+    		selected = 0;
+    	}
+    	if (vizChoice.getSelectionModel().getSelectedIndex() != selected) {
+    		//the listener charts the option
+    		vizChoice.getSelectionModel().select(selected);
+    	} else {
+    		showOption(selected);
+    	}
+    }
+    
+    /**
+     * showOption method
+     * Displays the option at a position in the choice box on the PieCharts
+     * 
+     * @param index the position of the option, 0 for the aggregate, 1 for the rolling aggregate
+     * and the position of the poll plus 2 for a poll
+     */
+    private void showOption(int index) {
+    	if (polls == null || polls.size() == 0 || index < 0) {
+    		return;
+    	}
+    	//change chart data to the selected option in the choice box using chartCreationHelper method to display the data on the PieCharts.
+    	//The polls can change on other threads, so they are charted from a copy taken as a whole
+    	if(index > 1) {
+    		if (index - 2 < polls.size()) {
+    			Poll pollToChart = polls.getPollSnapshot(polls.getPollId(index - 2));
+    			if (pollToChart != null) {
+    				chartCreationHelper(pollToChart);
+    			}
+    		}
+    		return;
+    	}
+    	
+    	//create the name String array for the aggregate poll from the parties of the first poll
+    	String[] names = firstPollPartyNames();
+    	if (index == 1) {
+    		chartCreationHelper(polls.getRollingAggregatePoll(names));
+    	}
+    	else {
+    		chartCreationHelper(polls.getAggregatePoll(names));
+    	}
+    }
+    
     /**
      * chartCreationHelper method
-     * Used to set the data of the PieCharts so that they visualize the requested data.
+     * Used to set the data of the PieCharts so that they visualize the requested data. The slices
+     * already on the charts are kept and only get new values or labels if those changed, slices
+     * are only added for parties not on the charts yet and removed for parties not in the poll.
      * 
      * Precondition: <code>aPoll</code> must be of the Poll class
      * Postcondition: Displays the Poll data on the PieCharts
@@ -94,36 +164,160 @@ public class VisualizePollController {
      * @param aPoll The Poll that will be visualized by the PieCharts
      */
     private void chartCreationHelper(Poll aPoll) {
-    	//Create PieChart data arrays for the Seats and percent Votes PieCharts
-    	PieChart.Data[] seatData = new PieChart.Data[aPoll.getNumberOfParties()];
-		PieChart.Data[] votesData = new PieChart.Data[aPoll.getNumberOfParties()];
-		
-		for(int i = 0; i < seatData.length; i++) {
-			//Create and input the data into the PieChart data array with the Party name and number of seats/votes for each party
-			Party aParty = aPoll.getParties()[i];
-			seatData[i] = new PieChart.Data(aParty.getName() + " (" + aParty.getProjectedNumberOfSeats() + ")", aParty.getProjectedNumberOfSeats());
-			votesData[i] = new PieChart.Data(aParty.getName() + " (" + Math.round(aParty.getProjectedPercentageOfVotes() *1000.0)/10.0 + ")", aParty.getProjectedPercentageOfVotes());
-		}
-		
-		//set the PieCharts to display the data in the PieChart data arrays
-		seatsChart.setData(FXCollections.observableArrayList(seatData));
-		votesChart.setData(FXCollections.observableArrayList(votesData));
-		
-		//make the legend invisible
-		seatsChart.setLegendVisible(false);
-		votesChart.setLegendVisible(false);
-		
-		//Set the colour of the PieChart data node to the required party colour
-		
-		for(int i = 0; i < seatData.length; i++) {
-			//get the party colour and change it to HTML form
-			String colorToUse = aPoll.getParties()[i].getPartyColour().toString();
-			colorToUse = colorToUse.replace("0x", "#");
-			
-			//set the colour of the data node to the required colour
-			seatData[i].getNode().setStyle("-fx-pie-color: " + colorToUse + ";");
-			votesData[i].getNode().setStyle("-fx-pie-color: " + colorToUse + ";");
-		}
+    	HashSet<String> charted = new HashSet<String>();
+    	
+    	for (Party aParty : aPoll.getParties()) {
+    		if (aParty == null) {
+    			continue;
+    		}
+    		//Update the slices with the Party name and number of seats/votes for each party
+    		String name = aParty.getName();
+    		float seats = aParty.getProjectedNumberOfSeats();
+    		float votes = aParty.getProjectedPercentageOfVotes();
+    		updateSlice(seatsChart, seatSlices, aParty, name + " (" + seats + ")", seats);
+    		updateSlice(votesChart, voteSlices, aParty, name + " (" + Math.round(votes *1000.0)/10.0 + ")", votes);
+    		charted.add(name);
+    	}
+    	
+    	//take off the slices of parties that are not in the poll
+    	removeSlices(seatsChart, seatSlices, charted);
+    	removeSlices(votesChart, voteSlices, charted);
+    }
+    
+    /**
+     * updateSlice method
+     * Changes the slice of a party on a PieChart to a new value and label, or adds and colours
+     * a slice if the party has none yet
+     * 
+     * @param chart the PieChart the slice is on
+     * @param slices the slices on the PieChart by party name
+     * @param aParty the party of the slice
+     * @param label the label of the slice
+     * @param value the size of the slice
+     */
+    private void updateSlice(PieChart chart, HashMap<String, PieChart.Data> slices, Party aParty, String label, double value) {
+    	PieChart.Data slice = slices.get(aParty.getName());
+    	if (slice == null) {
+    		slice = new PieChart.Data(label, value);
+    		slices.put(aParty.getName(), slice);
+    		//the node of the slice is created once it is on the chart
+    		chart.getData().add(slice);
+    		String style = partyStyles.computeIfAbsent(aParty.getName(), name -> pieStyle(aParty));
+    		if (!style.isEmpty()) {
+    			slice.getNode().setStyle(style);
+    		}
+    		return;
+    	}
+    	if (slice.getPieValue() != value) {
+    		slice.setPieValue(value);
+    	}
+    	if (!label.equals(slice.getName())) {
+    		slice.setName(label);
+    	}
+    }
+    
+    /**
+     * removeSlices method
+     * Takes the slices of the parties that are not charted off a PieChart
+     * 
+     * @param chart the PieChart the slices are on
+     * @param slices the slices on the PieChart by party name
+     * @param charted the names of the parties that are charted
+     */
+    private static void removeSlices(PieChart chart, HashMap<String, PieChart.Data> slices, HashSet<String> charted) {
+    	if (slices.size() == charted.size()) {
+    		return;
+    	}
+    	Iterator<Map.Entry<String, PieChart.Data>> it = slices.entrySet().iterator();
+    	while (it.hasNext()) {
+    		Map.Entry<String, PieChart.Data> entry = it.next();
+    		if (!charted.contains(entry.getKey())) {
+    			chart.getData().remove(entry.getValue());
+    			it.remove();
+    		}
+    	}
+    }
+    
+    /**
+     * pieStyle method
+     * Gets the style that gives the slices of a party its colour
+     * 
+     * @param aParty the party
+     * @return the style, or an empty String if the party has no colour
+     */
+    private static String pieStyle(Party aParty) {
+    	Color colour = aParty.getPartyColour();
+    	if (colour == null) {
+    		return "";
+    	}
+    	//change the party colour to HTML form
+    	return "-fx-pie-color: " + colour.toString().replace("0x", "#") + ";";
+    }
+    
+    /**
+     * runSimulation method
+     * Simulates the election from the polls on a background thread, and shows each party's
+     * chance of a majority and of the most seats, and the ranges of its seats and votes.
+     * 
+     * Precondition: none
+     * Postcondition: A running simulation is cancelled and a new one is started. Its outcome
+     * is shown in the <code>simulationResults</code> text area once it finishes.
+     * 
+     * @param event the click on the simulate button
+     */
+    @FXML
+    void runSimulation(ActionEvent event) {
+    	if (polls == null || polls.size() == 0) {
+    		simulationResults.setText("There are no polls to simulate.");
+    		return;
+    	}
+    	if (simulation != null) {
+    		simulation.cancel();
+    	}
+    	
+    	//simulate the parties of the first poll, like the aggregate poll
+    	String[] names = firstPollPartyNames();
+    	PollList pollsToSimulate = polls;
+    	long seed = System.nanoTime();
+    	
+    	Task<SimulationResult> task = new Task<SimulationResult>() {
+    		@Override
+    		protected SimulationResult call() {
+    			return simulator.simulate(pollsToSimulate, names, seed);
+    		}
+    	};
+    	task.setOnSucceeded(e -> simulationResults.setText(task.getValue().toString()));
+    	task.setOnFailed(e -> simulationResults.setText("The simulation failed: " + task.getException().getMessage()));
+    	simulation = task;
+    	
+    	simulationResults.setText("Simulating...");
+    	Thread thread = new Thread(task, "election-simulation");
+    	thread.setDaemon(true);
+    	thread.start();
+    }
+    
+    /**
+     * firstPollPartyNames method
+     * Gets the names of the parties of the first poll, which are the parties the aggregates
+     * and the simulation cover. The poll is read from a copy, since it can change on other
+     * threads, and the empty slots of its parties array are skipped.
+     * 
+     * Precondition: <code>polls</code> has at least one poll
+     * Postcondition: the names of the parties in the first poll are returned in order
+     * 
+     * @return the names of the parties of the first poll
+     */
+    private String[] firstPollPartyNames() {
+    	Poll firstPoll = polls.getPollSnapshot(polls.getPollId(0));
+    	ArrayList<String> names = new ArrayList<String>();
+    	if (firstPoll != null) {
+    		for (Party aParty : firstPoll.getParties()) {
+    			if (aParty != null) {
+    				names.add(aParty.getName());
+    			}
+    		}
+    	}
+    	return names.toArray(new String[0]);
     }
     
     /** setPolls method
@@ -139,14 +333,12 @@ public class VisualizePollController {
     
     
     /** updatePollNames method
-     * Updates the list of poll names in vizChoice after they've been edited
-     * Precondition: newPollNames must be a string ArrayList
-     * Postcondition: Options in the choicebox will be set to the names in the ArrayList
-     * 
-     * @param newPollNames ArrayList of the poll names to set the choicebox options to
+     * Updates the list of poll names in vizChoice after they've been edited, reading the current names from the polls
+     * Precondition: none
+     * Postcondition: Options in the choicebox will be the aggregate options followed by the current poll names
      */
-	public void updatePollNames(ArrayList<String> newPollNames) {
-		vizChoice.setItems(FXCollections.observableArrayList(newPollNames));
+	public void updatePollNames() {
+		//start reads the names from the polls and keeps the aggregate options in front of them
 		start();
 	}
 }
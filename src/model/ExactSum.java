@@ -0,0 +1,95 @@
+package model;
+
+import java.math.BigInteger;
+
+/**
+ * Sum of floats that is kept exactly, so it does not depend on the order the values
+ * were added in.  Sums of different parts of a list of values can be merged in any
+ * order, and give the same result as adding the values one by one.
+ * <p>
+ * A float is a 24 bit integer times a power of two.  The sum keeps a long for every
+ * 16 powers of two, and a value is added to the long of its power, shifted by the
+ * rest of the power.  Every so many additions the longs are normalized, carrying the
+ * bits above the lowest 16 into the next long, so they never overflow.  The sum is
+ * rounded once, when it is read.
+ *
+ * @author Joshua Lee
+ */
+final class ExactSum {
+	// a float is its mantissa times 2 to the power of its biased exponent minus this
+	private static final int EXPONENT_BIAS = 150;
+	private static final int BITS_PER_LIMB = 16;
+	// one limb per 16 of the 255 biased exponents, and one for the carries out of the top
+	private static final int LIMBS = 17;
+	// a shifted mantissa has at most 39 bits, so this many can be added to a limb
+	// of 16 bits without overflowing
+	private static final int ADDITIONS_BEFORE_CARRY = 1 << 22;
+
+	private final long[] limbs = new long[LIMBS];
+	private int additions;
+
+	/**
+	 * Adds a value to the sum.
+	 *
+	 * @param value a finite value.
+	 */
+	void add(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int exponent = (bits >>> 23) & 0xFF;
+		long mantissa = bits & 0x7FFFFF;
+		if (exponent == 0) {
+			// subnormal values have the exponent of the smallest normal ones
+			exponent = 1;
+		} else {
+			mantissa |= 0x800000;
+		}
+		long shifted = mantissa << (exponent % BITS_PER_LIMB);
+		limbs[exponent / BITS_PER_LIMB] += bits < 0 ? -shifted : shifted;
+		if (++additions == ADDITIONS_BEFORE_CARRY) {
+			carry();
+		}
+	}
+
+	/**
+	 * Adds another sum to this one.
+	 *
+	 * @param other the sum to add, whose value is left as it was.
+	 */
+	void add(ExactSum other) {
+		carry();
+		other.carry();
+		for (int limb = 0; limb < LIMBS; limb++) {
+			limbs[limb] += other.limbs[limb];
+		}
+		// the limbs can have a bit above the lowest 16 now, which the next carry takes out
+		additions = 1;
+	}
+
+	/**
+	 * @return the sum, rounded to the nearest double.
+	 */
+	double doubleValue() {
+		carry();
+		BigInteger sum = BigInteger.ZERO;
+		for (int limb = LIMBS - 1; limb >= 0; limb--) {
+			sum = sum.shiftLeft(BITS_PER_LIMB).add(BigInteger.valueOf(limbs[limb]));
+		}
+		// a nonzero sum is a multiple of the smallest float, far from the doubles
+		// too small to be scaled without rounding
+		return Math.scalb(sum.doubleValue(), -EXPONENT_BIAS);
+	}
+
+	/**
+	 * Carries the bits of every limb above the lowest 16 into the next limb.
+	 */
+	private void carry() {
+		if (additions == 0) {
+			return;
+		}
+		for (int limb = 0; limb < LIMBS - 1; limb++) {
+			limbs[limb + 1] += limbs[limb] >> BITS_PER_LIMB;
+			limbs[limb] &= (1L << BITS_PER_LIMB) - 1;
+		}
+		additions = 0;
+	}
+}
@@ -1,6 +1,7 @@
 package model;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 import javafx.scene.paint.Color;
 
 /**
@@ -9,6 +10,10 @@ import javafx.scene.paint.Color;
  * This is implemented using the Singleton design pattern.  Only a single instance of
  * this class will exist while the application is running.  To get a reference to the 
  * single instance, use the getInstance() method.
+ * <p>
+ * Random polls can be generated from a seed.  The same seed, settings and number of
+ * polls always give the same polls, even though large poll lists are generated on
+ * several threads.
  * 
  * @author Nathaly Verwaal
  *
@@ -16,6 +21,8 @@ import javafx.scene.paint.Color;
 public class Factory {
 	public static final int DEFAULT_NUMBER_OF_SEATS = 345;
 	public static final int DEFAULT_NUMBER_OF_POLLS = 5;
+	// number of polls generated from each split of the seeded generator
+	private static final int RANDOM_POLLS_PER_CHUNK = 1024;
 
 	private int numOfSeats = DEFAULT_NUMBER_OF_SEATS;
 	private String[] partyNames = {"BQ", "CPC", "Green", "LPC", "NDP", "PPC", "Rhinoceros"};
@@ -85,6 +92,7 @@ public class Factory {
 	 * seats available in the election polled.
 	 */
 	private Factory() {
+		PartyRegistry.getInstance().register(partyNames, partyColours);
 	}
 
 	/**
@@ -121,6 +129,9 @@ public class Factory {
 			partyColours[index] = colours[index];
 			index++;
 		}
+		
+		// give the parties of this election their ids up front
+		PartyRegistry.getInstance().register(partyNames, partyColours);
 	}
 	
 	/**
@@ -157,7 +168,20 @@ public class Factory {
 	 * @return Party that was randomly generated within specified parameters.
 	 */
 	public Party createRandomParty(String name, Color colour, int maximumSeats, int maximumPercent) {
-		Random rand = new Random();
+		return createRandomParty(new SplittableRandom(), name, colour, maximumSeats, maximumPercent);
+	}
+	
+	/**
+	 * Create a random party like <code>createRandomParty(String, Color, int, int)</code>, drawing
+	 * the random numbers from the specified generator.
+	 * 
+	 * @param rand the generator to draw from.
+	 * @param name the name for the party to generate
+	 * @param maximumSeats maximum number of seats this party should be projected to win
+	 * @param maximumPercent maximum percent of the vote this party should be projected to win
+	 * @return Party that was randomly generated within specified parameters.
+	 */
+	public Party createRandomParty(SplittableRandom rand, String name, Color colour, int maximumSeats, int maximumPercent) {
 		Party p1 = new Party(name);
 		p1.setColour(colour);
 		
@@ -178,24 +202,6 @@ public class Factory {
 		return p1;
 	}
 	
-	/**
-	 * Removes the character at specified index from the string and returns the result.
-	 * @param str the string to remove a character from
-	 * @param index the index of the character to remove
-	 * @return the string <code>str</code> with the character at specified index removed.
-	 */
-	private String removeChar(String str, int index) {
-		String first = "";
-		String second = "";
-		if (index!= 0 ) {
-			first = str.substring(0,index);
-		}
-		if (index != str.length()-1) {
-			second = str.substring(index+1);
-		}
-		return first + second;
-	}
-	
 	/**
 	 * Create a random poll which will have the specified name which will contain all the parties for this
 	 * election.  The total projected votes for all parties will add to 100% and the total project seats will
@@ -206,40 +212,52 @@ public class Factory {
 	 * party will win.
 	 */
 	public Poll createRandomPoll(String name) {
+		return createRandomPoll(new SplittableRandom(), name);
+	}
+	
+	/**
+	 * Create a random poll like <code>createRandomPoll(String)</code>, drawing the random numbers
+	 * from the specified generator.
+	 * @param rand the generator to draw from.
+	 * @param name the name for the poll to create
+	 * @return poll that randomly divides projected number of seats each party will win and projected percent of vote each
+	 * party will win.
+	 */
+	public Poll createRandomPoll(SplittableRandom rand, String name) {
 		Poll poll = new Poll(name, partyNames.length);
 		
 		// Create all indices into the partyNames array, so we can randomly choose a party.
-		String partyIndices = "";
+		// The indices that have not been used yet are kept at the end of the array.
+		int[] partyIndices = new int[partyNames.length];
 		for (int index = 0; index < partyNames.length; index++) {
-			partyIndices += index;
+			partyIndices[index] = index;
 		}
 		
-		Random rand = new Random();
 		int percentLeft = 100;
 		int seatsLeft = numOfSeats;
 		for (int counter = 0; counter < partyNames.length-1; counter++) {
-			// randomly choose an index from the list of indices into the partyNames array
-			int nextIndex = rand.nextInt(partyIndices.length());
-			String indexAsString = partyIndices.substring(nextIndex,nextIndex+1);
-			int index = Integer.parseInt(indexAsString);
+			// randomly choose one of the unused indices and swap it to the front of them
+			int nextIndex = counter + rand.nextInt(partyNames.length - counter);
+			int index = partyIndices[nextIndex];
+			partyIndices[nextIndex] = partyIndices[counter];
+			partyIndices[counter] = index;
 
 			// Generate a random party with the randomly chosen name and appropriate random seats and percent
-			Party p = createRandomParty(partyNames[index], partyColours[index], seatsLeft, percentLeft);
+			Party p = createRandomParty(rand, partyNames[index], partyColours[index], seatsLeft, percentLeft);
 			poll.addParty(p);
 			
 			// Setup for next party to generate
 			percentLeft -= p.getProjectedPercentageOfVotes() * 100;
 			seatsLeft -= p.getProjectedNumberOfSeats();
-			
-			// this has the index we used in this iteration removed
-			partyIndices = removeChar(partyIndices, nextIndex);
 		}
 		
 		// There is one party left now, project that it will get the remaining seats and percentage of vote
-		int lastIndex = Integer.parseInt(partyIndices);
-		Party lastParty = new Party(partyNames[lastIndex],seatsLeft,percentLeft/100.0f);
-		lastParty.setColour(partyColours[lastIndex]);
-		poll.addParty(lastParty);
+		if (partyNames.length > 0) {
+			int lastIndex = partyIndices[partyNames.length - 1];
+			Party lastParty = new Party(partyNames[lastIndex],seatsLeft,percentLeft/100.0f);
+			lastParty.setColour(partyColours[lastIndex]);
+			poll.addParty(lastParty);
+		}
 		
 		return poll;
 	}
@@ -288,10 +306,48 @@ public class Factory {
 	 * @return the PollList with randomly generated polls.
 	 */
 	public PollList createRandomPollList(int numOfPolls) {
+		return createRandomPollList(numOfPolls, new SplittableRandom().nextLong());
+	}
+	
+	/**
+	 * Create a poll list with randomly created polls that are generated from a seed.  Calling
+	 * this again with the same seed, number of polls, number of seats and parties gives the same polls.
+	 * @param numOfPolls the number of polls that will be randomly generated and placed in the list.
+	 * @param seed the seed to generate the polls from.
+	 * @return the PollList with randomly generated polls.
+	 */
+	public PollList createRandomPollList(int numOfPolls, long seed) {
 		PollList list = new PollList(numOfPolls,numOfSeats);
-		for (int counter = 0; counter < numOfPolls; counter++) {
-			list.addPoll(createRandomPoll("Poll" + counter));
-		}
+		list.addAll(createRandomPolls(numOfPolls, seed));
 		return list;
 	}
-}
+	
+	/**
+	 * Create randomly created polls that are generated from a seed, without placing them in a list.
+	 * Calling this again with the same seed, number of polls, number of seats and parties gives the same polls.
+	 * <p>
+	 * The polls are generated in chunks of a fixed size on the common fork/join pool.  The generator
+	 * of each chunk is split off the seeded generator in chunk order before any chunk is generated,
+	 * so the result does not depend on the number of threads or on which chunk finishes first.
+	 * @param numOfPolls the number of polls to generate.
+	 * @param seed the seed to generate the polls from.
+	 * @return the randomly generated polls, named "Poll0" onwards.
+	 */
+	public Poll[] createRandomPolls(int numOfPolls, long seed) {
+		int chunks = (Math.max(0, numOfPolls) + RANDOM_POLLS_PER_CHUNK - 1) / RANDOM_POLLS_PER_CHUNK;
+		SplittableRandom seeded = new SplittableRandom(seed);
+		SplittableRandom[] generators = new SplittableRandom[chunks];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			generators[chunk] = seeded.split();
+		}
+		
+		Poll[] polls = new Poll[Math.max(0, numOfPolls)];
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int end = Math.min(polls.length, (chunk + 1) * RANDOM_POLLS_PER_CHUNK);
+			for (int counter = chunk * RANDOM_POLLS_PER_CHUNK; counter < end; counter++) {
+				polls[counter] = createRandomPoll(generators[chunk], "Poll" + counter);
+			}
+		});
+		return polls;
+	}
+}
\ No newline at end of file
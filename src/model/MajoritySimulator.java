@@ -0,0 +1,306 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates how likely each party is to win a majority by simulating many elections
+ * from the polls of a poll list.
+ * <p>
+ * The projected seats and votes of a party are each drawn from a normal distribution
+ * with the mean and standard deviation of that party over the polls.  The spread is
+ * never taken to be smaller than the sampling error of a poll of
+ * <code>PollWeighting.DEFAULT_SAMPLE_SIZE</code> people, so a single poll still gives
+ * a range of outcomes.  The drawn seats are then scaled to fill the seats of the poll
+ * list and the drawn votes to add up to 100%.
+ * <p>
+ * Trials run in rounds of fixed size tasks on the threads of the simulator.  Every task
+ * gets its own random stream, split off the seed in task order, and only counts
+ * outcomes, so a seed always gives the same result whatever the number of threads.
+ * After each round the standard errors of the majority and plurality probabilities are
+ * checked, and the simulation stops as soon as all of them are within the tolerance.
+ * A simulation also stops after the current round when its thread is interrupted.
+ *
+ * @author Joshua Lee
+ */
+public class MajoritySimulator implements AutoCloseable {
+	/** default largest number of elections to simulate */
+	public static final int DEFAULT_MAX_TRIALS = 1 << 20;
+	/** default standard error at which the probabilities are taken to have converged */
+	public static final double DEFAULT_TOLERANCE = 0.002;
+
+	private static final int TRIALS_PER_TASK = 4096;
+	private static final int TASKS_PER_ROUND = 16;
+	// resolution of the vote intervals, in steps per 100%
+	static final int VOTE_STEPS = 1000;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a simulator that uses a thread per processor.
+	 */
+	public MajoritySimulator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a simulator.
+	 *
+	 * @param parallelism the number of threads to simulate on, at least 1.
+	 */
+	public MajoritySimulator(int parallelism) {
+		pool = new ForkJoinPool(Math.max(1, parallelism));
+	}
+
+	/**
+	 * Simulates elections with the default number of trials and tolerance.
+	 *
+	 * @param list the polls to simulate from.
+	 * @param names the names of the parties to include.
+	 * @param seed the seed of the random streams.
+	 * @return the outcome of the simulation.
+	 */
+	public SimulationResult simulate(PollList list, String[] names, long seed) {
+		return simulate(list, names, seed, DEFAULT_MAX_TRIALS, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Simulates elections until the probabilities converge or the maximum number of
+	 * trials has been run.
+	 *
+	 * @param list the polls to simulate from.
+	 * @param names the names of the parties to include.
+	 * @param seed the seed of the random streams.
+	 * @param maxTrials the largest number of elections to simulate.  At least one round
+	 * of trials is always run.
+	 * @param tolerance the standard error at which a probability has converged.
+	 * @return the outcome of the simulation.
+	 */
+	public SimulationResult simulate(PollList list, String[] names, long seed, int maxTrials, double tolerance) {
+		Distributions distributions = new Distributions(list, names);
+		SplittableRandom seeded = new SplittableRandom(seed);
+		Counts counts = new Counts(names.length, list.getNumOfSeats());
+		boolean converged = false;
+
+		while (!converged && counts.trials < Math.max(1, maxTrials) && !Thread.currentThread().isInterrupted()) {
+			List<Trials> round = new ArrayList<>(TASKS_PER_ROUND);
+			for (int task = 0; task < TASKS_PER_ROUND; task++) {
+				round.add(new Trials(distributions, seeded.split()));
+			}
+			try {
+				for (Future<Counts> result : pool.invokeAll(round)) {
+					counts.merge(result.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A simulation task failed.", e.getCause());
+			}
+			converged = counts.hasConverged(tolerance);
+		}
+
+		return new SimulationResult(names, list.getNumOfSeats(), counts.trials, converged,
+				counts.majorities, counts.pluralities, counts.seatCounts, counts.voteCounts);
+	}
+
+	/**
+	 * Stops the threads of this simulator.
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Mean and standard deviation of the seats and votes of each party over the polls.
+	 */
+	private static class Distributions {
+		private final int numOfSeats;
+		private final double[] seatMeans;
+		private final double[] seatDeviations;
+		private final double[] voteMeans;
+		private final double[] voteDeviations;
+
+		private Distributions(PollList list, String[] names) {
+			numOfSeats = list.getNumOfSeats();
+			int parties = names.length;
+			seatMeans = new double[parties];
+			seatDeviations = new double[parties];
+			voteMeans = new double[parties];
+			voteDeviations = new double[parties];
+
+			int[] ids = new int[parties];
+			for (int n = 0; n < parties; n++) {
+				ids[n] = PartyRegistry.getInstance().idOf(names[n]);
+			}
+			double[] seatSquares = new double[parties];
+			double[] voteSquares = new double[parties];
+			int[] occurrences = new int[parties];
+			// in concurrent mode each poll is read from a copy, so its parties can't change
+			// while they are summed
+			Poll aPoll;
+			for (int index = 0; (aPoll = list.pollForReading(index)) != null; index++) {
+				for (int n = 0; n < parties; n++) {
+					Party aParty = ids[n] < 0 ? null : aPoll.getParty(ids[n]);
+					if (aParty != null) {
+						double seats = aParty.getProjectedNumberOfSeats();
+						double votes = aParty.getProjectedPercentageOfVotes();
+						seatMeans[n] += seats;
+						seatSquares[n] += seats * seats;
+						voteMeans[n] += votes;
+						voteSquares[n] += votes * votes;
+						occurrences[n]++;
+					}
+				}
+			}
+
+			for (int n = 0; n < parties; n++) {
+				if (occurrences[n] == 0) {
+					continue;
+				}
+				seatMeans[n] /= occurrences[n];
+				voteMeans[n] /= occurrences[n];
+				double seatVariance = Math.max(0, seatSquares[n] / occurrences[n] - seatMeans[n] * seatMeans[n]);
+				double voteVariance = Math.max(0, voteSquares[n] / occurrences[n] - voteMeans[n] * voteMeans[n]);
+
+				// the sampling error of a poll, as a share of the votes and in seats
+				double share = Math.min(1, voteMeans[n]);
+				double samplingError = Math.sqrt(share * (1 - share) / PollWeighting.DEFAULT_SAMPLE_SIZE);
+				voteDeviations[n] = Math.max(Math.sqrt(voteVariance), samplingError);
+				seatDeviations[n] = Math.max(Math.sqrt(seatVariance), samplingError * numOfSeats);
+			}
+		}
+	}
+
+	/**
+	 * Outcomes counted over a number of trials.
+	 */
+	private static class Counts {
+		private int trials;
+		private final int[] majorities;
+		private final int[] pluralities;
+		// histograms of the seats and votes of each party
+		private final int[][] seatCounts;
+		private final int[][] voteCounts;
+
+		private Counts(int parties, int numOfSeats) {
+			majorities = new int[parties];
+			pluralities = new int[parties];
+			seatCounts = new int[parties][numOfSeats + 1];
+			voteCounts = new int[parties][VOTE_STEPS + 1];
+		}
+
+		private void merge(Counts other) {
+			trials += other.trials;
+			for (int n = 0; n < majorities.length; n++) {
+				majorities[n] += other.majorities[n];
+				pluralities[n] += other.pluralities[n];
+				for (int seats = 0; seats < seatCounts[n].length; seats++) {
+					seatCounts[n][seats] += other.seatCounts[n][seats];
+				}
+				for (int votes = 0; votes < voteCounts[n].length; votes++) {
+					voteCounts[n][votes] += other.voteCounts[n][votes];
+				}
+			}
+		}
+
+		private boolean hasConverged(double tolerance) {
+			for (int n = 0; n < majorities.length; n++) {
+				if (standardError(majorities[n]) > tolerance || standardError(pluralities[n]) > tolerance) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private double standardError(int successes) {
+			double p = (double) successes / trials;
+			return Math.sqrt(p * (1 - p) / trials);
+		}
+	}
+
+	/**
+	 * One task of a round: simulates a fixed number of elections with its own random stream.
+	 */
+	private static class Trials implements Callable<Counts> {
+		private final Distributions distributions;
+		private final SplittableRandom random;
+		// the second normal value drawn by the polar method, if it was not used yet
+		private double spareGaussian;
+		private boolean hasSpareGaussian;
+
+		private Trials(Distributions distributions, SplittableRandom random) {
+			this.distributions = distributions;
+			this.random = random;
+		}
+
+		@Override
+		public Counts call() {
+			Distributions d = distributions;
+			int parties = d.seatMeans.length;
+			Counts counts = new Counts(parties, d.numOfSeats);
+			double[] seats = new double[parties];
+			double[] votes = new double[parties];
+
+			for (int trial = 0; trial < TRIALS_PER_TASK; trial++) {
+				double totalSeats = 0;
+				double totalVotes = 0;
+				for (int n = 0; n < parties; n++) {
+					seats[n] = Math.max(0, d.seatMeans[n] + d.seatDeviations[n] * nextGaussian());
+					votes[n] = Math.max(0, d.voteMeans[n] + d.voteDeviations[n] * nextGaussian());
+					totalSeats += seats[n];
+					totalVotes += votes[n];
+				}
+
+				int leader = -1;
+				for (int n = 0; n < parties; n++) {
+					// every seat goes to some party, and all votes add up to 100%
+					seats[n] = totalSeats > 0 ? seats[n] * d.numOfSeats / totalSeats : 0;
+					votes[n] = totalVotes > 0 ? votes[n] / totalVotes : 0;
+					if (seats[n] * 2 > d.numOfSeats) {
+						counts.majorities[n]++;
+					}
+					if (leader < 0 || seats[n] > seats[leader]) {
+						leader = n;
+					}
+					counts.seatCounts[n][(int) Math.round(seats[n])]++;
+					counts.voteCounts[n][(int) Math.round(votes[n] * VOTE_STEPS)]++;
+				}
+				if (leader >= 0 && totalSeats > 0) {
+					counts.pluralities[leader]++;
+				}
+			}
+			counts.trials = TRIALS_PER_TASK;
+			return counts;
+		}
+
+		/**
+		 * Draws a standard normal value with the polar method, since SplittableRandom
+		 * has no nextGaussian of its own.
+		 */
+		private double nextGaussian() {
+			if (hasSpareGaussian) {
+				hasSpareGaussian = false;
+				return spareGaussian;
+			}
+			double u;
+			double v;
+			double s;
+			do {
+				u = 2 * random.nextDouble() - 1;
+				v = 2 * random.nextDouble() - 1;
+				s = u * u + v * v;
+			} while (s >= 1 || s == 0);
+			double scale = Math.sqrt(-2 * Math.log(s) / s);
+			spareGaussian = v * scale;
+			hasSpareGaussian = true;
+			return u * scale;
+		}
+	}
+}
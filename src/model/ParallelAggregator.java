@@ -0,0 +1,221 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the aggregate of a poll list by reading every poll, using fork/join to
+ * split the polls into chunks that are summed on separate threads.  The partial
+ * sums of the chunks are then merged into the averages.
+ * <p>
+ * Poll lists read their aggregate from running totals, so this is only needed when
+ * the polls have to be read again: a poll list that holds untracked polls uses its
+ * aggregator, if one was set with <code>PollList.setParallelAggregator</code>, and
+ * an aggregator can recompute the aggregate of any poll list to check its totals.
+ * <p>
+ * The sums are kept exactly, like the sum of the polls read by a poll list itself, and
+ * are only rounded when the averages are taken.  How the polls are split into chunks
+ * and the order the chunks are merged in don't change them, so the result matches the
+ * sequential aggregate exactly.
+ *
+ * @author Joshua Lee
+ */
+public class ParallelAggregator implements AutoCloseable {
+	/** default number of polls below which the polls are summed on the calling thread */
+	public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 8192;
+
+	private final ForkJoinPool pool;
+	private final int sequentialThreshold;
+
+	/**
+	 * Creates an aggregator that uses a thread per processor and the default threshold.
+	 */
+	public ParallelAggregator() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_SEQUENTIAL_THRESHOLD);
+	}
+
+	/**
+	 * Creates an aggregator.
+	 *
+	 * @param parallelism the number of threads to sum chunks of polls on, at least 1.
+	 * @param sequentialThreshold the number of polls below which a chunk is not split
+	 * any further.  Poll lists smaller than this are summed on the calling thread.
+	 */
+	public ParallelAggregator(int parallelism, int sequentialThreshold) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+		this.sequentialThreshold = Math.max(1, sequentialThreshold);
+	}
+
+	/**
+	 * @return the number of threads this aggregator sums on.
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * @return the number of polls below which a chunk is summed without splitting it.
+	 */
+	public int getSequentialThreshold() {
+		return sequentialThreshold;
+	}
+
+	/**
+	 * Gets the aggregate of all polls in a poll list, reading every poll.
+	 *
+	 * @param list the poll list to aggregate.
+	 * @param names the names of the parties to include in the aggregate.
+	 * @return a poll named "Aggregate" with the average data of each party.
+	 */
+	public Poll getAggregatePoll(PollList list, String[] names) {
+		// Each party is summed once, even if it is named twice.
+		PartyRegistry registry = PartyRegistry.getInstance();
+		int[] ids = new int[names.length];
+		int[] slotById = new int[registry.size()];
+		int slots = 0;
+		for (int i = 0; i < names.length; i++) {
+			ids[i] = registry.idOf(names[i]);
+			if (ids[i] >= 0 && slotById[ids[i]] == 0) {
+				slotById[ids[i]] = ++slots;
+			}
+		}
+
+		PollMatrix matrix = list.getMatrix();
+		SumTask task = new SumTask(matrix == null ? list.toArray() : null, matrix, slotById, slots, 0, list.size());
+		PartialSums sums = list.size() <= sequentialThreshold ? task.compute() : pool.invoke(task);
+
+		Poll aggregate = new Poll("Aggregate", names.length);
+		for (int i = 0; i < names.length; i++) {
+			Party avgParty = new Party(names[i]);
+			int slot = ids[i] >= 0 ? slotById[ids[i]] - 1 : -1;
+			if (slot >= 0 && sums.occurrences[slot] != 0) {
+				avgParty.setProjectedNumberOfSeats((float)(sums.seats[slot].doubleValue() / sums.occurrences[slot]));
+				avgParty.setProjectedPercentageOfVotes((float)(sums.votes[slot].doubleValue() / sums.occurrences[slot]));
+				avgParty.setColour(list.partyColour(ids[i]));
+			}
+			aggregate.addParty(avgParty);
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Gets the average data of one party over all polls in a poll list, reading every poll.
+	 *
+	 * @param list the poll list to aggregate.
+	 * @param name the name of the party.
+	 * @return a Party with the average data of the named party.
+	 */
+	public Party getAveragePartyData(PollList list, String name) {
+		return getAggregatePoll(list, new String[] {name}).getParties()[0];
+	}
+
+	/**
+	 * Stops the threads of this aggregator.
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Sums of seats, votes and occurrences, one entry per party being aggregated.
+	 */
+	private static class PartialSums {
+		private final ExactSum[] seats;
+		private final ExactSum[] votes;
+		private final int[] occurrences;
+
+		private PartialSums(int slots) {
+			seats = new ExactSum[slots];
+			votes = new ExactSum[slots];
+			occurrences = new int[slots];
+			for (int slot = 0; slot < slots; slot++) {
+				seats[slot] = new ExactSum();
+				votes[slot] = new ExactSum();
+			}
+		}
+
+		private void merge(PartialSums other) {
+			for (int slot = 0; slot < seats.length; slot++) {
+				seats[slot].add(other.seats[slot]);
+				votes[slot].add(other.votes[slot]);
+				occurrences[slot] += other.occurrences[slot];
+			}
+		}
+	}
+
+	/**
+	 * Sums the polls in a range, splitting the range in half while it is larger than
+	 * the threshold.  Columnar poll lists are summed straight from the column store.
+	 */
+	private class SumTask extends RecursiveTask<PartialSums> {
+		private static final long serialVersionUID = 1L;
+
+		private final Poll[] polls;
+		private final PollMatrix matrix;
+		private final int[] slotById;
+		private final int slots;
+		private final int from;
+		private final int to;
+
+		private SumTask(Poll[] polls, PollMatrix matrix, int[] slotById, int slots, int from, int to) {
+			this.polls = polls;
+			this.matrix = matrix;
+			this.slotById = slotById;
+			this.slots = slots;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected PartialSums compute() {
+			if (to - from > sequentialThreshold) {
+				int middle = (from + to) >>> 1;
+				SumTask first = new SumTask(polls, matrix, slotById, slots, from, middle);
+				SumTask second = new SumTask(polls, matrix, slotById, slots, middle, to);
+				first.fork();
+				PartialSums sums = second.compute();
+				sums.merge(first.join());
+				return sums;
+			}
+			return matrix != null ? sumRows() : sumPolls();
+		}
+
+		private PartialSums sumPolls() {
+			PartialSums sums = new PartialSums(slots);
+			for (int i = from; i < to; i++) {
+				Party[] parties = polls[i].getParties();
+				for (int n = 0; n < polls[i].getNumberOfParties(); n++) {
+					int id = parties[n].getId();
+					int slot = id >= 0 && id < slotById.length ? slotById[id] - 1 : -1;
+					if (slot >= 0) {
+						sums.seats[slot].add(parties[n].getProjectedNumberOfSeats());
+						sums.votes[slot].add(parties[n].getProjectedPercentageOfVotes());
+						sums.occurrences[slot]++;
+					}
+				}
+			}
+			return sums;
+		}
+
+		private PartialSums sumRows() {
+			PartialSums sums = new PartialSums(slots);
+			int[] slotByColumn = new int[matrix.getColumns()];
+			for (int column = 0; column < slotByColumn.length; column++) {
+				int id = PartyRegistry.getInstance().idOf(matrix.getPartyName(column));
+				slotByColumn[column] = id >= 0 && id < slotById.length ? slotById[id] - 1 : -1;
+			}
+			for (int row = from; row < to; row++) {
+				for (int column = 0; column < slotByColumn.length; column++) {
+					int slot = slotByColumn[column];
+					if (slot >= 0 && matrix.isPresent(row, column)) {
+						sums.seats[slot].add(matrix.getSeats(row, column));
+						sums.votes[slot].add(matrix.getVotes(row, column));
+						sums.occurrences[slot]++;
+					}
+				}
+			}
+			return sums;
+		}
+	}
+}
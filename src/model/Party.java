@@ -1,5 +1,8 @@
 package model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import javafx.scene.paint.Color;
 
 /** This class represents a single political party
@@ -11,10 +14,14 @@ public class Party {
 
     /** required instance variables */
     private String name;
+    private int id;
     private float projectedNumberOfSeats;
     private float projectedPercentageOfVotes;
     private Color partyColour;
 
+    /** the poll this party was added to, told whenever the projections change */
+    Poll poll;
+
 
     /** Class constructor
      * Constructs a Party object with a specified name, partyName 
@@ -23,6 +30,7 @@ public class Party {
      */
     public Party(String partyName) {
         this.name = partyName;
+        this.id = PartyRegistry.getInstance().intern(partyName);
     }
 
 
@@ -53,6 +61,7 @@ public class Party {
         }
 
         this.name = partyName;
+        this.id = PartyRegistry.getInstance().intern(partyName);
         this.projectedNumberOfSeats = numberOfSeats;
         this.projectedPercentageOfVotes = percentageOfVotes;
     }
@@ -68,6 +77,14 @@ public class Party {
         return name;
     }
 
+    /**
+	 * Getter for party id
+	 * @return the id of the party name in the PartyRegistry
+	 */
+    public int getId() {
+        return id;
+    }
+
     /**
 	 * Getter for projectedNumberOfSeats
 	 * @return the projected number of seats the party will win
@@ -94,6 +111,18 @@ public class Party {
             System.out.println("No colour set for party");
         return partyColour;
     }
+
+    /**
+	 * colour() method
+	 * Gets the colour of the party without the message getPartyColour()
+     * prints when there is none, for code that copies or aggregates parties
+     * and handles a missing colour itself
+     * 
+	 * @return the colour of the party, or null if none is set
+	 */
+    Color colour() {
+        return partyColour;
+    }
     
 
     /** Setter methods for all instance variables, with validatiom */
@@ -105,7 +134,12 @@ public class Party {
      @param partyName The name that will be set for party
 	 */
     public void setName(String thePartyName) {
+        int previousId = this.id;
         this.name = thePartyName;
+        this.id = PartyRegistry.getInstance().intern(thePartyName);
+
+        // the owning poll finds its parties by id
+        if (poll != null) poll.partyRenamed(this, previousId);
     }
 
     /**
@@ -130,10 +164,14 @@ public class Party {
         if (predictedNumberOfSeats < 0) {
             System.out.println("Cannot set number of seats to a negative number.");
             // if error is found, reject the argument value
-            predictedNumberOfSeats = this.projectedNumberOfSeats;
+            predictedNumberOfSeats = getProjectedNumberOfSeats();
         }
 
-        this.projectedNumberOfSeats = predictedNumberOfSeats;
+        float previousSeats = getProjectedNumberOfSeats();
+        storeProjection(predictedNumberOfSeats, getProjectedPercentageOfVotes());
+
+        // let the owning poll update the running totals of its poll list
+        if (poll != null) poll.partyProjectionChanged(this, previousSeats, getProjectedPercentageOfVotes());
     }
 
     /**
@@ -147,14 +185,31 @@ public class Party {
         // validating the argument
         if (predictedPercentageOfVotes < 0)  {
             System.out.println("Percentage of votes must be greater than 0");
-            predictedPercentageOfVotes = this.projectedPercentageOfVotes;
+            predictedPercentageOfVotes = getProjectedPercentageOfVotes();
         }
         if (predictedPercentageOfVotes > 1) {
             System.out.println("Percentage of votes must be less than 1.");
-            predictedPercentageOfVotes = this.projectedPercentageOfVotes;
+            predictedPercentageOfVotes = getProjectedPercentageOfVotes();
         }
 
-        this.projectedPercentageOfVotes = predictedPercentageOfVotes;
+        float previousPercentage = getProjectedPercentageOfVotes();
+        storeProjection(getProjectedNumberOfSeats(), predictedPercentageOfVotes);
+
+        // let the owning poll update the running totals of its poll list
+        if (poll != null) poll.partyProjectionChanged(this, getProjectedNumberOfSeats(), previousPercentage);
+    }
+
+    /**
+	 * storeProjection() method
+     * Stores validated projections.  Parties that are views over a column
+     * store of a poll list write the values through to the store instead.
+     * 
+     * @param seats the projected number of seats to store
+     * @param percentageOfVotes the projected percentage of votes to store
+	 */
+    void storeProjection(float seats, float percentageOfVotes) {
+        this.projectedNumberOfSeats = seats;
+        this.projectedPercentageOfVotes = percentageOfVotes;
     }
 
 
@@ -167,22 +222,41 @@ public class Party {
 	 * @return a String with the above values in a specific format
 	 */
     public String toString() {
-        // convert to percentage value
-        int projectedVotes = (int)(this.projectedPercentageOfVotes * 100);
-
-        // if no party colour is set
-        if (this.partyColour == null) {
-            return (this.name + " (" + projectedVotes + "% of votes, " + 
-                    this.projectedNumberOfSeats + " seats)");
+        StringBuilder result = new StringBuilder();
+        try {
+            appendTo(result);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
         }
+        return result.toString();
+    }
+
 
-        // otherwise extract the RGB values from the party colour
-        int blueValue = (int) partyColour.getBlue();
-        int greenValue = (int) partyColour.getGreen();
-        int redValue = (int) partyColour.getRed();
-        
-        return (this.name + " ([" + redValue + "," + greenValue + "," + blueValue + "], " + 
-                projectedVotes + "% of votes, " + this.projectedNumberOfSeats + " seats)");
+    /**
+	 * appendTo() method
+	 * Writes the same text as toString() to an Appendable, without building
+     * a String first
+     * 
+     * @param out where to write the text
+     * 
+     * @throws IOException if writing to out fails
+	 */
+    public void appendTo(Appendable out) throws IOException {
+        // convert to percentage value
+        int projectedVotes = (int)(getProjectedPercentageOfVotes() * 100);
+
+        out.append(this.name);
+        // the RGB values are omitted if no party colour is set
+        if (this.partyColour != null) {
+            out.append(" ([").append(String.valueOf((int) partyColour.getRed()))
+               .append(',').append(String.valueOf((int) partyColour.getGreen()))
+               .append(',').append(String.valueOf((int) partyColour.getBlue())).append("], ");
+        } else {
+            out.append(" (");
+        }
+        out.append(String.valueOf(projectedVotes)).append("% of votes, ")
+           .append(String.valueOf(getProjectedNumberOfSeats())).append(" seats)");
     }
 
 
@@ -205,7 +279,7 @@ public class Party {
             System.out.println("Can't divide by 0");
             return 0;
         }
-        return ((this.projectedNumberOfSeats)/totalSeatsAvailable);
+        return ((getProjectedNumberOfSeats())/totalSeatsAvailable);
     }
 
 
@@ -220,7 +294,29 @@ public class Party {
 	 * @return the result of the helper method called
 	 */
     public String textVisualizationBySeats(int maxStars, double numOfSeatsPerStar) {
-        return visualizationHelper(this.projectedNumberOfSeats, numOfSeatsPerStar, maxStars);
+        StringBuilder result = new StringBuilder();
+        try {
+            textVisualizationBySeats(result, maxStars, numOfSeatsPerStar);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
+
+
+    /**
+	 * textVisualizationBySeats() method
+     * Writes the visual representation of the party by seats to an Appendable
+     * 
+     * @param out where to write the visualization
+     * @param maxStars the maximum number of stars that should be displayed on a line
+     * @param numOfSeatsPerStar the number of seats represented by a single star
+     * 
+     * @throws IOException if writing to out fails
+	 */
+    public void textVisualizationBySeats(Appendable out, int maxStars, double numOfSeatsPerStar) throws IOException {
+        visualizationHelper(out, getProjectedNumberOfSeats(), numOfSeatsPerStar, maxStars);
     }
 
 
@@ -235,67 +331,49 @@ public class Party {
 	 * @return the result of the helper method called
 	 */
     public String textVisualizationByVotes(int maxStars, double numOfVotesPerStar) {
-        return visualizationHelper((this.projectedPercentageOfVotes * 100), numOfVotesPerStar, maxStars);  
+        StringBuilder result = new StringBuilder();
+        try {
+            textVisualizationByVotes(result, maxStars, numOfVotesPerStar);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
+
+
+    /**
+	 * textVisualizationByVotes() method
+     * Writes the visual representation of the party by votes to an Appendable
+     * 
+     * @param out where to write the visualization
+     * @param maxStars the maximum number of stars that should be displayed on a line
+     * @param numOfVotesPerStar the number of votes represented by a single star
+     * 
+     * @throws IOException if writing to out fails
+	 */
+    public void textVisualizationByVotes(Appendable out, int maxStars, double numOfVotesPerStar) throws IOException {
+        visualizationHelper(out, (getProjectedPercentageOfVotes() * 100), numOfVotesPerStar, maxStars);
     }
 
 
     /**
 	 * visualizationHelper() method
      * A private helper method that contains the logic for displaying a visual for a
-     * party. Prints a row of stars that represents the expected number of seats and a bar 
-     * to indicate the number of seats needed for a majority in parliament
+     * party. Writes a row of stars that represents the expected number of seats and a bar 
+     * to indicate the number of seats needed for a majority in parliament, followed by
+     * the party info. The bars are prebuilt once per scale by StarBars
      * 
+     * @param out where to write the visualization
      * @param predictedValue the predicted number of seats the party will win
      * @param valuePerStar the number of seats each star represents
      * @param maxStars the maximum number of stars that should be displayed on a line
      * 
-	 * @return a String that gives a visual representation of the data, along with party info
+     * @throws IOException if writing to out fails
 	 */
-    private String visualizationHelper(double predictedValue, double valuePerStar, int maxStars) {
-        String result = "";
-        int totalNumberOfStars = (int)(predictedValue/valuePerStar);
-        int numberOfStarsLeft = 0;
-
-        // check how many seats, and stars, are required to win majority
-        double majority = ((maxStars * valuePerStar)/2);
-        double majorityStars = Math.ceil(majority/valuePerStar);
-
-        boolean willGetMajority = (predictedValue >= majority) ? true : false;
-
-        // if the party has enough seats
-        if (willGetMajority) {
-            for (int i = 0; i < totalNumberOfStars; i++) {
-                // once the majority has been hit, add bar then continue
-                if (i == majorityStars) result += "|";
-                result += "*";
-            }
-            // if majority happens to be exactly half
-            if (majorityStars == totalNumberOfStars) result += "|";
-
-            // add spaces in order to reach maxStars
-            numberOfStarsLeft = maxStars - (result.length());
-            for (int i = 0; i <= numberOfStarsLeft; i++) result += " ";
-
-            return result + " " + toString();
-        }
-
-        // if the party does not have enough seats
-        else {
-            // check how many seats are missing to reach majority
-            double missingStars = Math.ceil(((majority - predictedValue)/valuePerStar));
-
-            // print out stars, then missing seats, then bar to indicate majority
-            for (int i = 0; i < totalNumberOfStars; i++) result += "*";
-            for (int j = 0; j < missingStars; j++) result += " ";
-            result += "|";
-
-            // add spaces in order to reach maxStars
-            numberOfStarsLeft = maxStars - (result.length());
-            for (int i = 0; i <= numberOfStarsLeft; i++) result += " ";
-        }
-
-        // return a String that consists of the visual, and party information
-        return result + " " + toString();
+    private void visualizationHelper(Appendable out, double predictedValue, double valuePerStar, int maxStars) throws IOException {
+        out.append(StarBars.forScale(maxStars, valuePerStar).bar(predictedValue));
+        appendTo(out);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package model;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Gives every party name used in this application a dense integer id, so polls
+ * and poll lists can find parties by indexing an array instead of comparing names.
+ * <p>
+ * Names are matched ignoring case, the same way polls have always matched party
+ * names.  Looking up a name hashes and compares it character by character, so no
+ * upper case copies of the strings are created.
+ * <p>
+ * This is implemented using the Singleton design pattern, like <code>Factory</code>,
+ * which seeds it with the names and colours of the parties in the election.  To get
+ * a reference to the single instance, use the getInstance() method.
+ * <p>
+ * Lookups never lock: every new name publishes a fresh copy of the table, which is
+ * cheap because an election only has a handful of parties.
+ *
+ * @author Joshua Lee
+ */
+public class PartyRegistry {
+	/** id returned for names that have not been registered */
+	public static final int UNKNOWN = -1;
+
+	private static final PartyRegistry singleton = new PartyRegistry();
+
+	private volatile Table table = new Table(new String[0], new Color[0], new int[16]);
+
+	/**
+	 * Get the single instance of PartyRegistry.
+	 * @return the single instance of the registry.
+	 */
+	public static PartyRegistry getInstance() {
+		return singleton;
+	}
+
+	private PartyRegistry() {
+	}
+
+	/**
+	 * Registers the parties of an election, together with their colours.  Parties
+	 * that are already known keep their id and take the new colour.
+	 *
+	 * @param names the names of the parties in the election.
+	 * @param colours the colours of the parties, matched to the names by index.
+	 */
+	public synchronized void register(String[] names, Color[] colours) {
+		for (int index = 0; index < names.length; index++) {
+			int id = intern(names[index]);
+			if (id != UNKNOWN && colours != null && index < colours.length) {
+				Color[] newColours = table.colours.clone();
+				newColours[id] = colours[index];
+				table = new Table(table.names, newColours, table.slots);
+			}
+		}
+	}
+
+	/**
+	 * Get the id of a party name, registering the name if it is new.
+	 *
+	 * @param name the name of the party.
+	 * @return the id of the party, or <code>UNKNOWN</code> if the name is null.
+	 */
+	public int intern(String name) {
+		int id = idOf(name);
+		if (id != UNKNOWN || name == null) return id;
+
+		synchronized (this) {
+			// another thread may have registered it while we were waiting
+			id = idOf(name);
+			if (id != UNKNOWN) return id;
+
+			Table current = table;
+			id = current.names.length;
+			String[] names = new String[id + 1];
+			Color[] colours = new Color[id + 1];
+			System.arraycopy(current.names, 0, names, 0, id);
+			System.arraycopy(current.colours, 0, colours, 0, id);
+			names[id] = name;
+
+			// keep the table at most half full so probes stay short
+			int[] slots = current.slots.length < 2 * names.length ? rehash(names, current.slots.length * 2) : current.slots.clone();
+			insert(slots, name, id);
+			table = new Table(names, colours, slots);
+			return id;
+		}
+	}
+
+	/**
+	 * Get the id of a party name without registering it.
+	 *
+	 * @param name the name of the party.
+	 * @return the id of the party, or <code>UNKNOWN</code> if the name was never registered.
+	 */
+	public int idOf(String name) {
+		if (name == null) return UNKNOWN;
+		Table current = table;
+		int mask = current.slots.length - 1;
+		int slot = hash(name) & mask;
+		while (current.slots[slot] != 0) {
+			int id = current.slots[slot] - 1;
+			if (current.names[id].equalsIgnoreCase(name)) return id;
+			slot = (slot + 1) & mask;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Get the name a party id was registered with.
+	 * @param id the id of the party.
+	 * @return the name of the party.
+	 */
+	public String getName(int id) {
+		return table.names[id];
+	}
+
+	/**
+	 * Get the colour registered for a party id.
+	 * @param id the id of the party.
+	 * @return the colour of the party, or null if no colour was registered.
+	 */
+	public Color getColour(int id) {
+		return table.colours[id];
+	}
+
+	/**
+	 * Get the number of registered parties.  Ids are always smaller than this number.
+	 * @return the number of registered parties.
+	 */
+	public int size() {
+		return table.names.length;
+	}
+
+	/**
+	 * Case insensitive hash code which agrees with <code>String.equalsIgnoreCase</code>.
+	 */
+	private static int hash(String name) {
+		int h = 0;
+		for (int index = 0; index < name.length(); index++) {
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(index)));
+		}
+		// spread the bits, since the table is indexed by the low bits only
+		return h ^ (h >>> 16);
+	}
+
+	private static int[] rehash(String[] names, int size) {
+		int[] slots = new int[size];
+		for (int id = 0; id < names.length - 1; id++) {
+			insert(slots, names[id], id);
+		}
+		return slots;
+	}
+
+	private static void insert(int[] slots, String name, int id) {
+		int mask = slots.length - 1;
+		int slot = hash(name) & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		// slots hold id + 1 so that 0 means empty
+		slots[slot] = id + 1;
+	}
+
+	/**
+	 * The registered names and colours, indexed by id, and the open addressing
+	 * hash table of ids.  A table is never changed once it is published.
+	 */
+	private static class Table {
+		private final String[] names;
+		private final Color[] colours;
+		private final int[] slots;
+
+		private Table(String[] names, Color[] colours, int[] slots) {
+			this.names = names;
+			this.colours = colours;
+			this.slots = slots;
+		}
+	}
+}
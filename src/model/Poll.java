@@ -1,5 +1,9 @@
 package model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
 /**
  * <h1>Poll Class individual assignment</h1>
  * Poll Class individual assignment
@@ -12,6 +16,18 @@ public class Poll {
 	private String name;
 	private Party[] parties;
 	private int numberOfParties;
+	// position + 1 of each party in the parties array, indexed by party id, 0 if absent
+	private int[] indexById = new int[0];
+	// the poll list whose running totals include this poll, if any
+	private PollList pollList;
+	// set once a party that belongs to another poll is added, such polls are never tracked
+	private boolean sharesParties;
+	// the id of this poll in the tracking poll list, used in the changes told to its listeners
+	int trackedPollId = -1;
+	// details about how the poll was taken, used to weigh it in a weighted aggregate
+	private int sampleSize;
+	private double pollsterRating = 1.0;
+	private LocalDate fieldDate = LocalDate.now();
 	
 	/**
 	 * Class constructor
@@ -34,6 +50,14 @@ public class Poll {
 			parties = new Party[aMax];	
 	}
 	
+	/**
+	 * Constructor for polls that are views over the column store of a poll list,
+	 * which keep their name and parties in the store rather than in this object.
+	 */
+	Poll() {
+		parties = new Party[0];
+	}
+	
 	/**
 	 * Getter for poll name, <code>name</code>
 	 * 
@@ -54,6 +78,88 @@ public class Poll {
 	 */
 	public void setPollName(String nameOfPoll) {
 		this.name = nameOfPoll;
+		if(pollList != null) pollList.pollRenamed(this);
+	}
+	
+	/**
+	 * Getter for the sample size of the poll
+	 * 
+	 * @return the number of people polled, 0 if unknown
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+	
+	/**
+	 * Setter for the sample size of the poll
+	 * 
+	 * Precondition: <code>aSampleSize</code> must not be negative
+	 * Postcondition: the sample size is set, and the weighted aggregate of the tracking poll list is updated
+	 * 
+	 * @param aSampleSize the number of people polled, 0 if unknown
+	 */
+	public void setSampleSize(int aSampleSize) {
+		if(aSampleSize < 0) {
+			System.out.println("ERROR: the sample size can't be negative");
+			return;
+		}
+		if(pollList != null) pollList.trackWeight(this, -1);
+		sampleSize = aSampleSize;
+		if(pollList != null) pollList.trackWeight(this, 1);
+	}
+	
+	/**
+	 * Getter for the rating of the pollster that took the poll
+	 * 
+	 * @return the rating of the pollster, 1 for an average pollster
+	 */
+	public double getPollsterRating() {
+		return pollsterRating;
+	}
+	
+	/**
+	 * Setter for the rating of the pollster that took the poll
+	 * 
+	 * Precondition: <code>aRating</code> must not be negative
+	 * Postcondition: the rating is set, and the weighted aggregate of the tracking poll list is updated
+	 * 
+	 * @param aRating the rating of the pollster, 1 for an average pollster, higher for more reliable ones
+	 */
+	public void setPollsterRating(double aRating) {
+		if(aRating < 0) {
+			System.out.println("ERROR: the pollster rating can't be negative");
+			return;
+		}
+		if(pollList != null) pollList.trackWeight(this, -1);
+		pollsterRating = aRating;
+		if(pollList != null) pollList.trackWeight(this, 1);
+	}
+	
+	/**
+	 * Getter for the date the poll was taken
+	 * 
+	 * @return the date the poll was taken, the day the poll was created unless set otherwise
+	 */
+	public LocalDate getFieldDate() {
+		return fieldDate;
+	}
+	
+	/**
+	 * Setter for the date the poll was taken
+	 * 
+	 * Precondition: <code>aDate</code> cannot be null
+	 * Postcondition: the date is set, and the weighted aggregate of the tracking poll list is updated
+	 * 
+	 * @param aDate the date the poll was taken
+	 */
+	public void setFieldDate(LocalDate aDate) {
+		if(aDate == null) {
+			System.out.println("ERROR: the field date can't be empty");
+			return;
+		}
+		if(pollList != null) pollList.trackWeight(this, -1);
+		fieldDate = aDate;
+		if(pollList != null) pollList.trackWeight(this, 1);
 	}
 	
 	/**
@@ -95,26 +201,193 @@ public class Poll {
 	 * 
 	 */
 	public void addParty(Party aParty) {	
-		boolean replaced = false;		
 		// prints error message if trying to add a null party	
-		if(aParty == null) System.out.println("ERROR: you can't add an empty party");	
-		for(int n = 0; n < numberOfParties; n++)
-			// to replace duplicate parties, the for loop iterates through every party in the parties array
-			// if the name of a party in the array is the same as the party we are trying to add, aPartyToAdd, then aPartyToAdd replaces it
-			// replaced is set to true to ensure that if a party has been replaced, then it is not added again
-			if(aParty.getName().toUpperCase().equals(parties[n].getName().toUpperCase())) {		
-				parties[n] = aParty;
-				replaced = true;	
-			}
+		if(aParty == null) {
+			System.out.println("ERROR: you can't add an empty party");	
+			return;
+		}
+		// a party shared with another poll can change behind our back, so stop tracking this poll
+		if(aParty.poll != null && aParty.poll != this) stopTracking();
+		// to replace duplicate parties, look up the position of a party with the same name by its id
+		// if there is one, then aPartyToAdd replaces it
+		int index = indexOf(aParty.getId());
+		if(index >= 0) {
+			releaseParty(parties[index]);
+			parties[index] = aParty;
+			adoptParty(aParty);
+		}
 		// prints error message if parties is full
-		if(numberOfParties == parties.length && replaced == false) 		
+		else if(numberOfParties == parties.length) 		
 			System.out.println("ERROR: the poll is full and no further parties can be added");
-		// adds aParty to the parties array if aParty is valid, parties is not full, and aParty has not replaced a duplicate
+		// adds aParty to the parties array if parties is not full and aParty has not replaced a duplicate
 		// increments numberOfParties every time a party is added
-		if(numberOfParties < parties.length && replaced == false && aParty != null) {	
+		else {	
 			parties[numberOfParties] = aParty;
+			setIndex(aParty.getId(), numberOfParties);
 			numberOfParties++;	
+			adoptParty(aParty);
+		}
+	}
+	
+	/**
+	 * Finds the position of a party in the <code>parties</code> array.
+	 * 
+	 * @param partyId the id of the party
+	 * @return the index of the party, or -1 if it is not in this poll
+	 */
+	private int indexOf(int partyId) {
+		if(partyId < 0 || partyId >= indexById.length) return -1;
+		return indexById[partyId] - 1;
+	}
+	
+	/**
+	 * Records the position of a party in the <code>parties</code> array,
+	 * growing the lookup table when the registry has grown.
+	 * 
+	 * @param partyId the id of the party
+	 * @param index the index of the party, or -1 to forget the party
+	 */
+	private void setIndex(int partyId, int index) {
+		if(partyId < 0) return;
+		if(partyId >= indexById.length) {
+			int[] grown = new int[Math.max(partyId + 1, PartyRegistry.getInstance().size())];
+			System.arraycopy(indexById, 0, grown, 0, indexById.length);
+			indexById = grown;
 		}
+		indexById[partyId] = index + 1;
+	}
+	
+	/**
+	 * Makes this poll the owner of <code>aParty</code> if it has none yet, and adds
+	 * the party to the running totals of the tracking poll list.
+	 * 
+	 * @param aParty the party that was just placed in the parties array
+	 */
+	private void adoptParty(Party aParty) {
+		if(aParty.poll == null) aParty.poll = this;
+		if(pollList == null) return;
+		pollList.trackParty(this, aParty.getId(), aParty.getProjectedNumberOfSeats(), aParty.getProjectedPercentageOfVotes(), 1);
+		pollList.partyEvent(this, PollListEvent.Type.PARTY_ADDED, aParty.getId());
+	}
+	
+	/**
+	 * Releases <code>aParty</code> after it was replaced, and removes it from the
+	 * running totals of the tracking poll list.
+	 * 
+	 * @param aParty the party that was just taken out of the parties array
+	 */
+	private void releaseParty(Party aParty) {
+		if(aParty.poll == this) aParty.poll = null;
+		if(pollList != null) pollList.trackParty(this, aParty.getId(), -aParty.getProjectedNumberOfSeats(), -aParty.getProjectedPercentageOfVotes(), -1);
+	}
+	
+	/**
+	 * Called by a poll list when this poll is added to it.  The first list a poll is
+	 * added to keeps running totals for it, as long as none of its parties are shared
+	 * with another poll.
+	 * 
+	 * @param aPollList the list this poll was added to
+	 * @return true if <code>aPollList</code> now tracks this poll
+	 */
+	boolean claim(PollList aPollList) {
+		if(pollList != null || sharesParties) return false;
+		pollList = aPollList;
+		trackAll(1);
+		return true;
+	}
+	
+	/**
+	 * Called by a poll list when this poll is removed from it.  If the list was
+	 * tracking this poll, the poll's data is taken out of its running totals and
+	 * the poll can be tracked by the next list it is added to.
+	 * 
+	 * @param aPollList the list this poll was removed from
+	 * @return true if <code>aPollList</code> was tracking this poll
+	 */
+	boolean release(PollList aPollList) {
+		if(pollList != aPollList) return false;
+		trackAll(-1);
+		pollList = null;
+		return true;
+	}
+	
+	/**
+	 * @param aPollList a poll list
+	 * @return true if <code>aPollList</code> keeps running totals for this poll
+	 */
+	boolean isTrackedBy(PollList aPollList) {
+		return pollList == aPollList;
+	}
+	
+	/**
+	 * Takes this poll out of the running totals of its tracking poll list, which
+	 * falls back to rescanning its polls from then on.
+	 */
+	private void stopTracking() {
+		sharesParties = true;
+		if(pollList == null) return;
+		trackAll(-1);
+		pollList.pollUntracked();
+		pollList = null;
+	}
+	
+	/**
+	 * Adds the data of all parties of this poll to the running totals of the
+	 * tracking poll list, or takes it out again.
+	 * 
+	 * @param sign 1 to add the data, -1 to take it out
+	 */
+	private void trackAll(int sign) {
+		// the poll list adds the whole poll to its rolling window, or takes it out, itself
+		for(int n = 0; n < numberOfParties; n++)
+			pollList.trackTotals(this, parties[n].getId(), sign * parties[n].getProjectedNumberOfSeats(), 
+					sign * parties[n].getProjectedPercentageOfVotes(), sign);
+	}
+	
+	/**
+	 * Calls the tracking poll list back with the data of every party of this poll,
+	 * so it can adjust its weighted totals.
+	 * 
+	 * @param sign 1 to add the weighted data, -1 to take it out
+	 */
+	void forEachTrackedParty(int sign) {
+		for(int n = 0; n < numberOfParties; n++)
+			pollList.trackWeightedParty(this, parties[n].getId(), sign * parties[n].getProjectedNumberOfSeats(), 
+					sign * parties[n].getProjectedPercentageOfVotes(), sign);
+	}
+	
+	/**
+	 * Called by a party of this poll after its projections changed.
+	 * 
+	 * @param aParty the party that changed
+	 * @param oldSeats the projected number of seats before the change
+	 * @param oldVotes the projected percentage of votes before the change
+	 */
+	void partyProjectionChanged(Party aParty, float oldSeats, float oldVotes) {
+		if(pollList == null) return;
+		pollList.trackParty(this, aParty.getId(), aParty.getProjectedNumberOfSeats() - (double)oldSeats, 
+				aParty.getProjectedPercentageOfVotes() - (double)oldVotes, 0);
+		pollList.partyEvent(this, PollListEvent.Type.PARTY_CHANGED, aParty.getId());
+	}
+	
+	/**
+	 * Called by a party of this poll after it was renamed.
+	 * 
+	 * @param aParty the party that was renamed
+	 * @param oldId the id of the party before the change
+	 */
+	void partyRenamed(Party aParty, int oldId) {
+		// move the party to its new id, unless that name is already taken by another party of this poll
+		int index = indexOf(oldId);
+		if(index >= 0 && parties[index] == aParty) {
+			setIndex(oldId, -1);
+			if(indexOf(aParty.getId()) < 0) setIndex(aParty.getId(), index);
+		}
+		if(pollList == null) return;
+		pollList.trackParty(this, oldId, -aParty.getProjectedNumberOfSeats(), -aParty.getProjectedPercentageOfVotes(), -1);
+		pollList.trackParty(this, aParty.getId(), aParty.getProjectedNumberOfSeats(), aParty.getProjectedPercentageOfVotes(), 1);
+		pollList.partyEvent(this, PollListEvent.Type.PARTY_REMOVED, oldId);
+		pollList.partyEvent(this, PollListEvent.Type.PARTY_ADDED, aParty.getId());
 	}
 	
 	/**
@@ -134,11 +407,25 @@ public class Poll {
 	 * 
 	 */
 	public Party getParty(String aName) {		
-		// iterate through parties, and check if the party name is equal to the requested name, aName
-		for(Party p : parties) 
-			if(p.getName().toUpperCase().equals(aName.toUpperCase())) 		
-				return p;	
-		return null;			
+		// a single hash probe in the registry gives the id of the requested name, aName
+		return getParty(PartyRegistry.getInstance().idOf(aName));
+	}
+	
+	/**
+	 * getParty method
+	 *  
+	 * Precondition: none
+	 * Postcondition: Party with requested id is returned
+	 * 
+	 * @param partyId The id of the party that is requested, as given by the PartyRegistry
+	 * 
+	 * @return The party with the requested id
+	 * if no such party exists, return null
+	 * 
+	 */
+	public Party getParty(int partyId) {
+		int index = indexOf(partyId);
+		return index < 0 ? null : parties[index];
 	}
 	
 	/**
@@ -162,13 +449,40 @@ public class Poll {
 	 * 
 	 */
 	public String textVisualizationBySeats(int maxStars, double numOfSeatsPerStar) {	
-		String vizBySeats = "";
-		// iterates through every party in parties and adds the name of the party only if the party is not null,
-		// along with maxStars and numOfSeatsPerStar information to a string
+		StringBuilder vizBySeats = new StringBuilder();
+		try {
+			textVisualizationBySeats(vizBySeats, maxStars, numOfSeatsPerStar);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return vizBySeats.toString();
+	}
+	
+	/**
+	 * textVisualizationBySeats method
+	 * 
+	 * Precondition: <code>maxStars</code> must be a positive integer and <code>numofSeatsPerStar</code> must be a positive double
+	 * Postcondition: writes the same visualization as <code>textVisualizationBySeats(int, double)</code>
+	 * to <code>out</code>, one party at a time, so no String of the whole poll is built
+	 * 
+	 * @param out where to write the visualization
+	 * 
+	 * @param maxStars integer representing the maximum number of stars that should be displayed on a single line
+	 * 
+	 * @param numOfSeatsPerStar double which indicates how many seats are represented by a single star
+	 * 
+	 * @throws IOException if writing to <code>out</code> fails
+	 */
+	public void textVisualizationBySeats(Appendable out, int maxStars, double numOfSeatsPerStar) throws IOException {
+		Party[] parties = getParties();
+		out.append(getPollName()).append('\n');
+		// iterates through every party in parties and writes the party only if the party is not null
 		for(int party = 0; party < parties.length; party++) 
-			if(parties[party] != null)
-				vizBySeats = vizBySeats + parties[party].textVisualizationBySeats(maxStars, numOfSeatsPerStar) + "\n";
-		return name + "\n" + vizBySeats;			
+			if(parties[party] != null) {
+				parties[party].textVisualizationBySeats(out, maxStars, numOfSeatsPerStar);
+				out.append('\n');
+			}
 	}
 	
 	/**
@@ -191,13 +505,40 @@ public class Poll {
 	 * including the name, the name of the parties, and the maxStars and percentOfVotesPerStar
 	 */
 	public String textVisualizationByVotes(int maxStars, double percentOfVotesPerStar) {	
-		String vizByVotes = "";
-		// iterates through every party in parties and adds the name of the party only if the party is not null,
-		// along with maxStars and percentOfVotesPerStar information to a string
+		StringBuilder vizByVotes = new StringBuilder();
+		try {
+			textVisualizationByVotes(vizByVotes, maxStars, percentOfVotesPerStar);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return vizByVotes.toString();
+	}
+	
+	/**
+	 * textVisualizationByVotes method
+	 * 
+	 * Precondition: <code>maxStars</code> must be a positive integer and <code>percentofVotesPerStar</code> must be a positive double
+	 * Postcondition: writes the same visualization as <code>textVisualizationByVotes(int, double)</code>
+	 * to <code>out</code>, one party at a time, so no String of the whole poll is built
+	 * 
+	 * @param out where to write the visualization
+	 * 
+	 * @param maxStars integer representing the maximum number of stars that should be displayed on a single line
+	 * 
+	 * @param percentOfVotesPerStar double indicating the percent of votes per star
+	 * 
+	 * @throws IOException if writing to <code>out</code> fails
+	 */
+	public void textVisualizationByVotes(Appendable out, int maxStars, double percentOfVotesPerStar) throws IOException {
+		Party[] parties = getParties();
+		out.append(getPollName()).append('\n');
+		// iterates through every party in parties and writes the party only if the party is not null
 		for(int party = 0; party < parties.length; party++)
-			if(parties[party] != null)
-				vizByVotes = vizByVotes + parties[party].textVisualizationByVotes(maxStars, percentOfVotesPerStar) + "\n";
-		return name + "\n" + vizByVotes;		
+			if(parties[party] != null) {
+				parties[party].textVisualizationByVotes(out, maxStars, percentOfVotesPerStar);
+				out.append('\n');
+			}
 	}
 	
 	/**
@@ -212,11 +553,12 @@ public class Poll {
 	 * @return String of the poll name and name of each party in the parties array
 	 */
 	public String toString() {			
-		String theParties = "";
+		Party[] parties = getParties();
+		StringBuilder theParties = new StringBuilder(getPollName()).append('\n');
 		// iterates through parties and adds the party name of every party in parties to a string only if the party is not null
 		for(int i = 0; i < parties.length; i++) 
 			if(parties[i] != null)
-				theParties = theParties + parties[i].getName() + "\n";
-		return name + "\n" + theParties;		
+				theParties.append(parties[i].getName()).append('\n');
+		return theParties.toString();		
 	}
 }
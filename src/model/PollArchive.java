@@ -0,0 +1,719 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Read-only archive of polls that is memory-mapped instead of loaded, so poll lists
+ * far larger than the heap can be aggregated and visualized.
+ * <p>
+ * Like the column store of a poll list, an archive has a column for each party, and
+ * every poll is a fixed size record with the seats and votes of each column.  Poll
+ * <code>n</code> is therefore found by arithmetic, and the aggregate of a party reads
+ * one float pair per poll.  The names of the polls are kept after the records, each
+ * found through the offset in its record.  Parties missing from a poll have NaN seats.
+ * <p>
+ * <code>Poll</code> and <code>Party</code> objects handed out by an archive are thin
+ * views that read the mapped file, like the views of a column store, so they can be
+ * created on demand and thrown away.  Their parties are listed in the order the
+ * poll listed them when it was archived.  They can't be changed: their setters print
+ * an error and leave the archive as it was.  Views can also be added to a poll list,
+ * which reads them again whenever it aggregates.
+ * <p>
+ * A mapping can't be larger than 2 GB, so the file is mapped in segments.  Records
+ * never cross a segment, and a name that would cross one starts at the next segment
+ * instead.  All numbers are big endian.  The layout of version 2 is:
+ * <pre>
+ * int     magic "PLAR"
+ * int     version
+ * int     number of seats
+ * int     number of polls
+ * int     number of columns
+ * int     size of a record
+ * int     size of a segment
+ * long    start of the records
+ * long    start of the names
+ * columns name (int length and UTF-8 bytes) and colour (four doubles: red, green,
+ *         blue, opacity, with a NaN red for none) of each column
+ * records offset of the name (long), length of the name (int), sample size (int),
+ *         pollster rating (double), field date (long, days since the epoch), then
+ *         seats (float) and percentage of votes (float) of each column, then
+ *         the columns of the parties of the poll in its own order (int), with -1
+ *         after the last one, padded to a multiple of 8 bytes
+ * names   UTF-8 bytes of the poll names
+ * </pre>
+ * Version 1 has no party order in its records, and its polls list their parties in
+ * column order.
+ *
+ * @author Joshua Lee
+ */
+public class PollArchive implements AutoCloseable {
+	/** the version written by this class */
+	public static final int VERSION = 2;
+
+	private static final int MAGIC = 0x504C4152;
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int BUFFER_SIZE = 1 << 20;
+	// number of polls summed by one task of an aggregate
+	private static final int POLLS_PER_TASK = 1 << 16;
+	// name offset, name length, sample size, pollster rating and field date
+	private static final int RECORD_HEADER_SIZE = 32;
+
+	private final FileChannel channel;
+	private final int numOfSeats;
+	private final int numberOfPolls;
+	private final int recordSize;
+	// offset of the party order in a record, or -1 if the records have none
+	private final int orderOffset;
+	private final int pollsPerSegment;
+	private final int segmentSize;
+	private final String[] partyNames;
+	private final Color[] partyColours;
+	// column + 1 of each party, indexed by party id, 0 if the party has no column
+	private final int[] columnById;
+	private final MappedByteBuffer[] records;
+	private final MappedByteBuffer[] names;
+
+	private PollArchive(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = read(0, 44);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a poll archive.");
+		}
+		int version = header.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported poll archive version " + version + ".");
+		}
+		numOfSeats = header.getInt();
+		numberOfPolls = header.getInt();
+		int columns = header.getInt();
+		recordSize = header.getInt();
+		segmentSize = header.getInt();
+		long recordsStart = header.getLong();
+		long namesStart = header.getLong();
+		if (numberOfPolls < 0 || columns < 0 || recordSize != recordSize(version, columns)
+				|| segmentSize < recordSize || recordsStart < 44 || namesStart < recordsStart
+				|| namesStart > channel.size()) {
+			throw new IOException("Corrupt poll archive header.");
+		}
+		orderOffset = version == 1 ? -1 : RECORD_HEADER_SIZE + 8 * columns;
+
+		// the column table sits between the header and the records
+		ByteBuffer table = read(44, (int) Math.min(Integer.MAX_VALUE, recordsStart - 44));
+		partyNames = new String[columns];
+		partyColours = new Color[columns];
+		int[] ids = new int[columns];
+		int maxId = -1;
+		for (int column = 0; column < columns; column++) {
+			byte[] name = new byte[table.getInt()];
+			table.get(name);
+			partyNames[column] = new String(name, StandardCharsets.UTF_8);
+			double red = table.getDouble();
+			double green = table.getDouble();
+			double blue = table.getDouble();
+			double opacity = table.getDouble();
+			partyColours[column] = Double.isNaN(red) ? null : new Color(red, green, blue, opacity);
+			ids[column] = PartyRegistry.getInstance().intern(partyNames[column]);
+			maxId = Math.max(maxId, ids[column]);
+		}
+		columnById = new int[maxId + 1];
+		for (int column = columns - 1; column >= 0; column--) {
+			if (ids[column] >= 0) {
+				columnById[ids[column]] = column + 1;
+			}
+		}
+
+		pollsPerSegment = segmentSize / recordSize;
+		records = new MappedByteBuffer[(int) ((numberOfPolls + (long) pollsPerSegment - 1) / pollsPerSegment)];
+		for (int segment = 0; segment < records.length; segment++) {
+			int polls = Math.min(pollsPerSegment, numberOfPolls - segment * pollsPerSegment);
+			records[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+					recordsStart + (long) segment * pollsPerSegment * recordSize, (long) polls * recordSize);
+		}
+		long namesSize = channel.size() - namesStart;
+		names = new MappedByteBuffer[(int) ((namesSize + segmentSize - 1) / segmentSize)];
+		for (int segment = 0; segment < names.length; segment++) {
+			long start = (long) segment * segmentSize;
+			names[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+					namesStart + start, Math.min(segmentSize, namesSize - start));
+		}
+	}
+
+	/**
+	 * Opens an archive for reading.
+	 *
+	 * @param file the archive file.
+	 * @return the open archive.
+	 * @throws IOException if the file can't be read or is not a valid archive.
+	 */
+	public static PollArchive open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new PollArchive(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the polls of a poll list to an archive, replacing the file if it exists.
+	 * The archive has a column for every party in the list, in the order the parties
+	 * first appear.
+	 *
+	 * @param list the poll list to archive.
+	 * @param file the file to write to.
+	 * @throws IOException if the file can't be written.
+	 */
+	public static void write(PollList list, Path file) throws IOException {
+		write(list, file, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Writes an archive with segments of a given size, so segments can be tried out
+	 * on small files.
+	 */
+	static void write(PollList list, Path file, int segmentSize) throws IOException {
+		// the columns of the column store, or every party in the order it first appears
+		List<String> columnNames = new ArrayList<>();
+		List<Color> columnColours = new ArrayList<>();
+		HashMap<String, Integer> columnByName = new HashMap<>();
+		PollMatrix matrix = list.getMatrix();
+		if (matrix != null) {
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				addColumn(matrix.getPartyName(column), matrix.getPartyColour(column), columnNames, columnColours, columnByName);
+			}
+		} else {
+			for (int index = 0; index < list.size(); index++) {
+				for (Party aParty : list.getPoll(index).getParties()) {
+					if (aParty != null) {
+						addColumn(aParty.getName(), aParty.colour(), columnNames, columnColours, columnByName);
+					}
+				}
+			}
+		}
+		int columns = columnNames.size();
+		int recordSize = recordSize(VERSION, columns);
+		if (segmentSize < recordSize) {
+			throw new IOException("A record of " + columns + " parties does not fit in a segment.");
+		}
+
+		ByteBuffer table = ByteBuffer.allocate(1024);
+		for (int column = 0; column < columns; column++) {
+			byte[] name = columnNames.get(column).getBytes(StandardCharsets.UTF_8);
+			table = ensureRemaining(table, 4 + name.length + 32);
+			table.putInt(name.length).put(name);
+			Color colour = columnColours.get(column);
+			if (colour == null) {
+				table.putDouble(Double.NaN).putDouble(0).putDouble(0).putDouble(0);
+			} else {
+				table.putDouble(colour.getRed()).putDouble(colour.getGreen())
+					.putDouble(colour.getBlue()).putDouble(colour.getOpacity());
+			}
+		}
+		table.flip();
+		// records start on a multiple of 8, so their doubles and longs are aligned
+		long recordsStart = (44 + table.remaining() + 7) & ~7L;
+		int numberOfPolls = list.size();
+		long namesStart = recordsStart + (long) numberOfPolls * recordSize;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(44);
+			header.putInt(MAGIC).putInt(VERSION).putInt(list.getNumOfSeats()).putInt(numberOfPolls)
+				.putInt(columns).putInt(recordSize).putInt(segmentSize).putLong(recordsStart).putLong(namesStart);
+			header.flip();
+			writeFully(channel, header, 0);
+			writeFully(channel, table, 44);
+
+			ByteBuffer recordBuffer = ByteBuffer.allocateDirect(Math.max(recordSize, BUFFER_SIZE / recordSize * recordSize));
+			ByteBuffer nameBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			long recordPosition = recordsStart;
+			long namePosition = namesStart;
+			long nameOffset = 0;
+			for (int index = 0; index < numberOfPolls; index++) {
+				Poll aPoll = list.getPoll(index);
+				byte[] name = aPoll.getPollName() == null ? new byte[0] : aPoll.getPollName().getBytes(StandardCharsets.UTF_8);
+				if (name.length > segmentSize) {
+					throw new IOException("The name of poll " + index + " is longer than a segment.");
+				}
+				// a name that would cross into the next segment starts at that segment
+				long roomInSegment = segmentSize - nameOffset % segmentSize;
+				if (name.length > roomInSegment) {
+					namePosition = flush(channel, nameBuffer, namePosition) + roomInSegment;
+					nameOffset += roomInSegment;
+				}
+
+				if (recordBuffer.remaining() < recordSize) {
+					recordPosition = flush(channel, recordBuffer, recordPosition);
+				}
+				recordBuffer.putLong(nameOffset).putInt(name.length).putInt(aPoll.getSampleSize())
+					.putDouble(aPoll.getPollsterRating()).putLong(aPoll.getFieldDate().toEpochDay());
+				int cells = recordBuffer.position();
+				for (int column = 0; column < columns; column++) {
+					recordBuffer.putFloat(Float.NaN).putFloat(0);
+				}
+				int order = recordBuffer.position();
+				while (recordBuffer.position() < cells - RECORD_HEADER_SIZE + recordSize) {
+					recordBuffer.putInt(-1);
+				}
+				int position = 0;
+				for (Party aParty : aPoll.getParties()) {
+					if (aParty != null) {
+						int column = columnByName.get(aParty.getName());
+						recordBuffer.putFloat(cells + 8 * column, aParty.getProjectedNumberOfSeats())
+							.putFloat(cells + 8 * column + 4, aParty.getProjectedPercentageOfVotes())
+							.putInt(order + 4 * position++, column);
+					}
+				}
+
+				int offset = 0;
+				while (offset < name.length) {
+					if (!nameBuffer.hasRemaining()) {
+						namePosition = flush(channel, nameBuffer, namePosition);
+					}
+					int length = Math.min(name.length - offset, nameBuffer.remaining());
+					nameBuffer.put(name, offset, length);
+					offset += length;
+				}
+				nameOffset += name.length;
+			}
+			flush(channel, recordBuffer, recordPosition);
+			flush(channel, nameBuffer, namePosition);
+		}
+	}
+
+	/**
+	 * @return the number of polls in the archive.
+	 */
+	public int size() {
+		return numberOfPolls;
+	}
+
+	/**
+	 * @return the number of seats of the poll list the archive was written from.
+	 */
+	public int getNumOfSeats() {
+		return numOfSeats;
+	}
+
+	/**
+	 * @return the names of the parties in the archive, one per column.
+	 */
+	public String[] getPartyNames() {
+		return partyNames.clone();
+	}
+
+	/**
+	 * Gets a view of a poll in the archive.
+	 *
+	 * @param index the position of the poll, from 0 to <code>size() - 1</code>.
+	 * @return a read-only Poll that reads the archive.
+	 */
+	public Poll getPoll(int index) {
+		if (index < 0 || index >= numberOfPolls) {
+			throw new IndexOutOfBoundsException("Poll " + index + " is outside an archive of " + numberOfPolls + " polls.");
+		}
+		return new ArchivedPoll(this, index);
+	}
+
+	/**
+	 * Creates a poll list of views of all polls in the archive.  Only the views are
+	 * kept on the heap, and the list reads the archive whenever it aggregates.
+	 *
+	 * @return a poll list of the archived polls.
+	 */
+	public PollList toPollList() {
+		PollList list = new PollList(numberOfPolls, numOfSeats);
+		for (int index = 0; index < numberOfPolls; index++) {
+			list.addPoll(new ArchivedPoll(this, index));
+		}
+		return list;
+	}
+
+	/**
+	 * Gets the aggregate of all polls in the archive, reading the seats and votes
+	 * straight from the mapped file.  Chunks of polls are summed on separate threads.
+	 *
+	 * @param names the names of the parties to include in the aggregate.
+	 * @return a poll named "Aggregate" with the average data of each party.
+	 */
+	public Poll getAggregatePoll(String[] names) {
+		int[] columns = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			columns[i] = column(PartyRegistry.getInstance().idOf(names[i]));
+		}
+
+		int tasks = (int) ((numberOfPolls + (long) POLLS_PER_TASK - 1) / POLLS_PER_TASK);
+		double[][] sums = IntStream.range(0, tasks).parallel()
+			.mapToObj(task -> sum(task * POLLS_PER_TASK, Math.min(numberOfPolls, (task + 1) * POLLS_PER_TASK), columns))
+			.reduce(new double[3][names.length], PollArchive::addSums);
+
+		Poll aggregate = new Poll("Aggregate", names.length);
+		for (int i = 0; i < names.length; i++) {
+			Party avgParty = new Party(names[i]);
+			if (sums[2][i] != 0) {
+				avgParty.setProjectedNumberOfSeats((float)(sums[0][i] / sums[2][i]));
+				// Clamps the average, which can be off by a rounding error.
+				avgParty.setProjectedPercentageOfVotes((float)Math.min(1, sums[1][i] / sums[2][i]));
+				avgParty.setColour(partyColours[columns[i]]);
+			}
+			aggregate.addParty(avgParty);
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Writes the text visualization of the seats of every poll in the archive,
+	 * like <code>PollList.textVisualizationBySeats</code>.
+	 *
+	 * @param out where to write the visualization.
+	 * @param maxStars the largest number of stars in a bar.
+	 * @throws IOException if writing to out fails.
+	 */
+	public void textVisualizationBySeats(Appendable out, int maxStars) throws IOException {
+		double numSeatsPerStar = Math.ceil((float)numOfSeats / maxStars);
+		for (int index = 0; index < numberOfPolls; index++) {
+			new ArchivedPoll(this, index).textVisualizationBySeats(out, maxStars, numSeatsPerStar);
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Writes the text visualization of the votes of every poll in the archive,
+	 * like <code>PollList.textVisualizationByVotes</code>.
+	 *
+	 * @param out where to write the visualization.
+	 * @param maxStars the largest number of stars in a bar.
+	 * @throws IOException if writing to out fails.
+	 */
+	public void textVisualizationByVotes(Appendable out, int maxStars) throws IOException {
+		double percentVotePerStar = Math.ceil(100.0 / maxStars);
+		for (int index = 0; index < numberOfPolls; index++) {
+			new ArchivedPoll(this, index).textVisualizationByVotes(out, maxStars, percentVotePerStar);
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Closes the file.  The mappings stay valid until they are garbage collected, so
+	 * views handed out before closing can still be read.
+	 *
+	 * @throws IOException if the file can't be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Sums the seats, votes and occurrences of some columns over a range of polls.
+	 */
+	private double[][] sum(int from, int to, int[] columns) {
+		double[][] sums = new double[3][columns.length];
+		int index = from;
+		while (index < to) {
+			// the part of the range that lies in one segment
+			MappedByteBuffer buffer = segmentOf(index);
+			int end = recordOf(index) + (Math.min(to, (index / pollsPerSegment + 1) * pollsPerSegment) - index) * recordSize;
+			for (int record = recordOf(index); record < end; record += recordSize, index++) {
+				for (int i = 0; i < columns.length; i++) {
+					if (columns[i] < 0) {
+						continue;
+					}
+					int cell = record + RECORD_HEADER_SIZE + 8 * columns[i];
+					float seats = buffer.getFloat(cell);
+					if (!Float.isNaN(seats)) {
+						sums[0][i] += seats;
+						sums[1][i] += buffer.getFloat(cell + 4);
+						sums[2][i]++;
+					}
+				}
+			}
+		}
+		return sums;
+	}
+
+	private static double[][] addSums(double[][] a, double[][] b) {
+		double[][] sum = new double[3][a[0].length];
+		for (int row = 0; row < 3; row++) {
+			for (int i = 0; i < sum[row].length; i++) {
+				sum[row][i] = a[row][i] + b[row][i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the size of a record of an archive of a version with some columns.
+	 */
+	private static int recordSize(int version, int columns) {
+		if (version == 1) {
+			return RECORD_HEADER_SIZE + 8 * columns;
+		}
+		// the party order holds a column for each party and -1 after the last one
+		return (RECORD_HEADER_SIZE + 12 * columns + 4 + 7) & ~7;
+	}
+
+	private int column(int partyId) {
+		if (partyId < 0 || partyId >= columnById.length) {
+			return -1;
+		}
+		return columnById[partyId] - 1;
+	}
+
+	private MappedByteBuffer segmentOf(int index) {
+		return records[index / pollsPerSegment];
+	}
+
+	private int recordOf(int index) {
+		return (index % pollsPerSegment) * recordSize;
+	}
+
+	private String getPollName(int index) {
+		MappedByteBuffer buffer = segmentOf(index);
+		int record = recordOf(index);
+		int length = buffer.getInt(record + 8);
+		if (length == 0) {
+			// an empty name takes no space, so its offset can be past the last segment
+			return "";
+		}
+		long offset = buffer.getLong(record);
+		byte[] name = new byte[length];
+		names[(int) (offset / segmentSize)].get((int) (offset % segmentSize), name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private float getSeats(int index, int column) {
+		return segmentOf(index).getFloat(recordOf(index) + RECORD_HEADER_SIZE + 8 * column);
+	}
+
+	private float getVotes(int index, int column) {
+		return segmentOf(index).getFloat(recordOf(index) + RECORD_HEADER_SIZE + 8 * column + 4);
+	}
+
+	private boolean isPresent(int index, int column) {
+		return !Float.isNaN(getSeats(index, column));
+	}
+
+	/**
+	 * @return the column of the party at a position of a poll, or -1 after its last party.
+	 */
+	private int columnAt(int index, int position) {
+		if (position >= partyNames.length) {
+			return -1;
+		}
+		int column = segmentOf(index).getInt(recordOf(index) + orderOffset + 4 * position);
+		return column < partyNames.length ? column : -1;
+	}
+
+	private ByteBuffer read(long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("The poll archive ends too early.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void addColumn(String name, Color colour, List<String> names, List<Color> colours,
+			HashMap<String, Integer> columnByName) {
+		Integer column = columnByName.get(name);
+		if (column == null) {
+			columnByName.put(name, names.size());
+			names.add(name);
+			colours.add(colour);
+		} else if (colours.get(column) == null) {
+			colours.set(column, colour);
+		}
+	}
+
+	private static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return buffer;
+		}
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+		buffer.flip();
+		return grown.put(buffer);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Writes out a buffer at a position and empties it.
+	 *
+	 * @return the position after what was written.
+	 */
+	private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		long end = position + buffer.remaining();
+		writeFully(channel, buffer, position);
+		buffer.clear();
+		return end;
+	}
+
+	/**
+	 * A read-only poll that is a view of one record of an archive.
+	 */
+	private static class ArchivedPoll extends Poll {
+		private final PollArchive archive;
+		private final int index;
+
+		private ArchivedPoll(PollArchive archive, int index) {
+			this.archive = archive;
+			this.index = index;
+		}
+
+		@Override
+		public String getPollName() {
+			return archive.getPollName(index);
+		}
+
+		@Override
+		public void setPollName(String nameOfPoll) {
+			System.out.println("ERROR: archived polls can't be changed.");
+		}
+
+		@Override
+		public int getSampleSize() {
+			return archive.segmentOf(index).getInt(archive.recordOf(index) + 12);
+		}
+
+		@Override
+		public void setSampleSize(int aSampleSize) {
+			System.out.println("ERROR: archived polls can't be changed.");
+		}
+
+		@Override
+		public double getPollsterRating() {
+			return archive.segmentOf(index).getDouble(archive.recordOf(index) + 16);
+		}
+
+		@Override
+		public void setPollsterRating(double aRating) {
+			System.out.println("ERROR: archived polls can't be changed.");
+		}
+
+		@Override
+		public LocalDate getFieldDate() {
+			return LocalDate.ofEpochDay(archive.segmentOf(index).getLong(archive.recordOf(index) + 24));
+		}
+
+		@Override
+		public void setFieldDate(LocalDate aDate) {
+			System.out.println("ERROR: archived polls can't be changed.");
+		}
+
+		@Override
+		public Party[] getParties() {
+			Party[] parties = new Party[getNumberOfParties()];
+			if (archive.orderOffset >= 0) {
+				for (int position = 0; position < parties.length; position++) {
+					parties[position] = new ArchivedParty(archive, index, archive.columnAt(index, position));
+				}
+				return parties;
+			}
+			int found = 0;
+			for (int column = 0; column < archive.partyNames.length; column++) {
+				if (archive.isPresent(index, column)) {
+					parties[found++] = new ArchivedParty(archive, index, column);
+				}
+			}
+			return parties;
+		}
+
+		@Override
+		public int getNumberOfParties() {
+			int count = 0;
+			if (archive.orderOffset >= 0) {
+				while (archive.columnAt(index, count) >= 0) {
+					count++;
+				}
+				return count;
+			}
+			for (int column = 0; column < archive.partyNames.length; column++) {
+				if (archive.isPresent(index, column)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public Party getParty(int partyId) {
+			int column = archive.column(partyId);
+			if (column < 0 || !archive.isPresent(index, column)) {
+				return null;
+			}
+			return new ArchivedParty(archive, index, column);
+		}
+
+		@Override
+		public void addParty(Party aParty) {
+			System.out.println("ERROR: archived polls can't be changed.");
+		}
+
+		@Override
+		boolean claim(PollList aPollList) {
+			// the archive can't report changes, so poll lists have to rescan this view
+			return false;
+		}
+	}
+
+	/**
+	 * A read-only party that is a view of one cell of an archive.
+	 */
+	private static class ArchivedParty extends Party {
+		private final PollArchive archive;
+		private final int index;
+		private final int column;
+
+		private ArchivedParty(PollArchive archive, int index, int column) {
+			super(archive.partyNames[column]);
+			if (archive.partyColours[column] != null) {
+				setColour(archive.partyColours[column]);
+			}
+			this.archive = archive;
+			this.index = index;
+			this.column = column;
+		}
+
+		@Override
+		public float getProjectedNumberOfSeats() {
+			return archive.getSeats(index, column);
+		}
+
+		@Override
+		public float getProjectedPercentageOfVotes() {
+			return archive.getVotes(index, column);
+		}
+
+		@Override
+		void storeProjection(float seats, float percentageOfVotes) {
+			System.out.println("ERROR: archived parties can't be changed.");
+		}
+
+		@Override
+		public void setName(String thePartyName) {
+			System.out.println("ERROR: archived parties can't be changed.");
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Imports polls from CSV files.  Each line holds one party of one poll:
+ * <pre>
+ * poll name,party name,projected seats,projected percentage of votes[,sample size[,field date]]
+ * </pre>
+ * The percentage of votes is between 0 and 100, as it is typed in the Edit tab.  The
+ * field date is written as yyyy-mm-dd.  The lines of a poll have to follow each other;
+ * a poll name that comes back after other polls starts a new poll.  Fields may be
+ * quoted with double quotes to hold commas, but not line breaks.  A first line that
+ * has no number for the seats is taken to be a header and skipped.
+ * <p>
+ * The file is cut into chunks that start and end on line boundaries, and the chunks
+ * are read through a FileChannel and parsed on the common fork/join pool.  Fields are
+ * parsed straight from the bytes: numbers never become Strings, and party names are
+ * only decoded the first time a chunk sees them.  The polls of all chunks are then
+ * added to the poll list in file order.
+ * <p>
+ * Malformed lines are skipped with an error message that gives their position in the
+ * file.
+ *
+ * @author Joshua Lee
+ */
+public class PollCsvImporter {
+	/** default number of bytes parsed by each task */
+	public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+	// exact powers of ten for parsing numbers with up to 15 digits
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16
+	};
+
+	private final int chunkSize;
+	private int skippedLines;
+
+	/**
+	 * Creates an importer with the default chunk size.
+	 */
+	public PollCsvImporter() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates an importer.
+	 *
+	 * @param chunkSize the number of bytes parsed by each task.  Lines longer than this
+	 * still end up in a single chunk.
+	 */
+	public PollCsvImporter(int chunkSize) {
+		this.chunkSize = Math.max(1024, chunkSize);
+	}
+
+	/**
+	 * @return the number of malformed lines skipped by the last import.
+	 */
+	public int getSkippedLines() {
+		return skippedLines;
+	}
+
+	/**
+	 * Imports the polls in a file into a new poll list.
+	 *
+	 * @param file the CSV file.
+	 * @param numOfSeats the number of seats in the election.
+	 * @return a poll list holding the polls in the file.
+	 * @throws IOException if the file can't be read.
+	 */
+	public PollList importFile(Path file, int numOfSeats) throws IOException {
+		Poll[] polls = readPolls(file);
+		PollList list = new PollList(polls.length, numOfSeats);
+		list.addAll(polls);
+		return list;
+	}
+
+	/**
+	 * Imports the polls in a file, adding them to the end of a poll list.
+	 *
+	 * @param file the CSV file.
+	 * @param list the poll list to add the polls to.
+	 * @throws IOException if the file can't be read.
+	 */
+	public void importInto(Path file, PollList list) throws IOException {
+		list.addAll(readPolls(file));
+	}
+
+	/**
+	 * Reads the polls in a file, in the order they appear.
+	 *
+	 * @param file the CSV file.
+	 * @return the polls.
+	 * @throws IOException if the file can't be read.
+	 */
+	public Poll[] readPolls(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] bounds = chunkBounds(channel);
+			Chunk[] chunks = new Chunk[bounds.length - 1];
+			IOException[] failure = new IOException[1];
+			IntStream.range(0, chunks.length).parallel().forEach(index -> {
+				try {
+					chunks[index] = new Chunk(bounds[index], read(channel, bounds[index], bounds[index + 1]));
+					chunks[index].parse(index == 0);
+				} catch (IOException e) {
+					synchronized (failure) {
+						failure[0] = e;
+					}
+				}
+			});
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+
+			// join the chunks, merging a poll that was cut in two by a chunk boundary
+			List<PollRows> rows = new ArrayList<>();
+			skippedLines = 0;
+			for (Chunk chunk : chunks) {
+				skippedLines += chunk.skippedLines;
+				for (int index = 0; index < chunk.polls.size(); index++) {
+					PollRows poll = chunk.polls.get(index);
+					PollRows previous = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+					if (index == 0 && previous != null && previous.name.equals(poll.name)) {
+						previous.parties.addAll(poll.parties);
+						if (poll.sampleSize > 0) previous.sampleSize = poll.sampleSize;
+						if (poll.fieldDate != null) previous.fieldDate = poll.fieldDate;
+					} else {
+						rows.add(poll);
+					}
+				}
+			}
+
+			Poll[] polls = new Poll[rows.size()];
+			for (int index = 0; index < polls.length; index++) {
+				polls[index] = rows.get(index).toPoll();
+			}
+			return polls;
+		}
+	}
+
+	/**
+	 * Finds where the chunks start: every chunk but the first starts just after a line break.
+	 */
+	private long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long position = chunkSize;
+		while (position < size) {
+			// look for the next line break from the nominal end of the chunk
+			long lineEnd = -1;
+			long scan = position;
+			while (lineEnd < 0 && scan < size) {
+				probe.clear();
+				int read = channel.read(probe, scan);
+				if (read <= 0) break;
+				for (int i = 0; i < read; i++) {
+					if (probe.get(i) == '\n') {
+						lineEnd = scan + i;
+						break;
+					}
+				}
+				scan += read;
+			}
+			if (lineEnd < 0 || lineEnd + 1 >= size) break;
+			bounds.add(lineEnd + 1);
+			position = lineEnd + 1 + chunkSize;
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+		byte[] bytes = new byte[(int) (to - from)];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			// positional reads don't move the channel, so chunks can be read in parallel
+			if (channel.read(buffer, from + buffer.position()) < 0) {
+				throw new IOException("The file ended while it was being read.");
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * The lines of one poll, as read from the file.
+	 */
+	private static class PollRows {
+		private final String name;
+		private final List<Party> parties = new ArrayList<>();
+		private int sampleSize;
+		private LocalDate fieldDate;
+
+		private PollRows(String name) {
+			this.name = name;
+		}
+
+		private Poll toPoll() {
+			Poll aPoll = new Poll(name, Math.max(1, parties.size()));
+			for (Party aParty : parties) {
+				aPoll.addParty(aParty);
+			}
+			if (sampleSize > 0) aPoll.setSampleSize(sampleSize);
+			if (fieldDate != null) aPoll.setFieldDate(fieldDate);
+			return aPoll;
+		}
+	}
+
+	/**
+	 * A piece of the file that starts and ends on a line boundary, and the polls parsed from it.
+	 */
+	private static class Chunk {
+		private static final int MAX_FIELDS = 6;
+
+		private final long offset;
+		// the bytes of the chunk, let go once they are parsed so only the polls stay on the heap
+		private byte[] bytes;
+		private final List<PollRows> polls = new ArrayList<>();
+		private int skippedLines;
+
+		// start and end of the fields of the current line, with quotes removed
+		private final int[] fieldStart = new int[MAX_FIELDS];
+		private final int[] fieldEnd = new int[MAX_FIELDS];
+		// bytes of fields that had doubled quotes, which can't be used in place
+		private final byte[][] unquoted = new byte[MAX_FIELDS][];
+
+		// names already decoded in this chunk
+		private final List<byte[]> nameBytes = new ArrayList<>();
+		private final List<String> names = new ArrayList<>();
+
+		private Chunk(long offset, byte[] bytes) {
+			this.offset = offset;
+			this.bytes = bytes;
+		}
+
+		private void parse(boolean mayHaveHeader) {
+			int position = 0;
+			boolean firstLine = true;
+			while (position < bytes.length) {
+				int end = position;
+				while (end < bytes.length && bytes[end] != '\n') end++;
+				int lineEnd = end > position && bytes[end - 1] == '\r' ? end - 1 : end;
+				if (lineEnd > position && !parseLine(position, lineEnd) && !(firstLine && mayHaveHeader)) {
+					skippedLines++;
+					System.out.println("ERROR: skipped malformed line at byte " + (offset + position) + " of the file.");
+				}
+				firstLine = false;
+				position = end + 1;
+			}
+			bytes = null;
+			Arrays.fill(unquoted, null);
+			nameBytes.clear();
+			names.clear();
+		}
+
+		private boolean parseLine(int from, int to) {
+			int fields = splitFields(from, to);
+			if (fields < 4) return false;
+
+			float seats = parseNumber(2);
+			float votes = parseNumber(3);
+			if (Float.isNaN(seats) || Float.isNaN(votes)) return false;
+			int sampleSize = 0;
+			LocalDate fieldDate = null;
+			if (fields > 4 && length(4) > 0) {
+				float size = parseNumber(4);
+				if (Float.isNaN(size)) return false;
+				sampleSize = (int) size;
+			}
+			if (fields > 5 && length(5) > 0) {
+				fieldDate = parseDate(5);
+				if (fieldDate == null) return false;
+			}
+
+			PollRows poll = polls.isEmpty() ? null : polls.get(polls.size() - 1);
+			if (poll == null || !sameBytes(0, poll.name)) {
+				poll = new PollRows(decode(0));
+				polls.add(poll);
+			}
+			poll.parties.add(new Party(name(1), seats, votes / 100));
+			if (sampleSize > 0) poll.sampleSize = sampleSize;
+			if (fieldDate != null) poll.fieldDate = fieldDate;
+			return true;
+		}
+
+		/**
+		 * Finds the fields of a line.
+		 * @return the number of fields, at most MAX_FIELDS.
+		 */
+		private int splitFields(int from, int to) {
+			int field = 0;
+			int position = from;
+			while (field < MAX_FIELDS) {
+				unquoted[field] = null;
+				if (position < to && bytes[position] == '"') {
+					// quoted field: runs to the closing quote, "" stands for a quote
+					int start = position + 1;
+					int end = start;
+					boolean doubled = false;
+					while (end < to && (bytes[end] != '"' || (end + 1 < to && bytes[end + 1] == '"'))) {
+						if (bytes[end] == '"') {
+							doubled = true;
+							end++;
+						}
+						end++;
+					}
+					fieldStart[field] = start;
+					fieldEnd[field] = end;
+					if (doubled) unquoted[field] = removeDoubledQuotes(start, end);
+					position = end + 1;
+					while (position < to && bytes[position] != ',') position++;
+				} else {
+					int end = position;
+					while (end < to && bytes[end] != ',') end++;
+					fieldStart[field] = position;
+					fieldEnd[field] = end;
+					position = end;
+				}
+				field++;
+				if (position >= to) break;
+				position++; // skip the comma
+			}
+			return field;
+		}
+
+		private byte[] removeDoubledQuotes(int start, int end) {
+			byte[] result = new byte[end - start];
+			int length = 0;
+			for (int i = start; i < end; i++) {
+				result[length++] = bytes[i];
+				if (bytes[i] == '"') i++;
+			}
+			return Arrays.copyOf(result, length);
+		}
+
+		private int length(int field) {
+			return unquoted[field] != null ? unquoted[field].length : fieldEnd[field] - fieldStart[field];
+		}
+
+		private byte at(int field, int index) {
+			return unquoted[field] != null ? unquoted[field][index] : bytes[fieldStart[field] + index];
+		}
+
+		private String decode(int field) {
+			if (unquoted[field] != null) return new String(unquoted[field], StandardCharsets.UTF_8);
+			return new String(bytes, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Gets a party name, decoding it only if this chunk has not seen it before.
+		 */
+		private String name(int field) {
+			for (int n = names.size() - 1; n >= 0; n--) {
+				byte[] known = nameBytes.get(n);
+				if (known.length == length(field) && equalBytes(field, known)) {
+					return names.get(n);
+				}
+			}
+			String name = decode(field);
+			nameBytes.add(name.getBytes(StandardCharsets.UTF_8));
+			names.add(name);
+			return name;
+		}
+
+		private boolean equalBytes(int field, byte[] known) {
+			for (int i = 0; i < known.length; i++) {
+				if (at(field, i) != known[i]) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Checks if a field holds a name, without decoding the field.  Poll names are
+		 * ASCII in practice, so only those are compared byte for byte.
+		 */
+		private boolean sameBytes(int field, String name) {
+			int length = length(field);
+			if (length != name.length()) return false;
+			for (int i = 0; i < length; i++) {
+				char c = name.charAt(i);
+				if (c >= 0x80) return name.equals(decode(field));
+				if (at(field, i) != c) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Parses a decimal number such as -12.5, or returns NaN if the field isn't one.
+		 */
+		private float parseNumber(int field) {
+			int length = length(field);
+			int i = 0;
+			while (i < length && at(field, i) == ' ') i++;
+			while (length > i && at(field, length - 1) == ' ') length--;
+			boolean negative = false;
+			if (i < length && (at(field, i) == '-' || at(field, i) == '+')) {
+				negative = at(field, i) == '-';
+				i++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int decimals = 0;
+			boolean point = false;
+			for (; i < length; i++) {
+				byte b = at(field, i);
+				if (b >= '0' && b <= '9') {
+					mantissa = mantissa * 10 + (b - '0');
+					digits++;
+					if (point) decimals++;
+				} else if (b == '.' && !point) {
+					point = true;
+				} else {
+					return Float.NaN;
+				}
+				if (digits > 15) {
+					// too long to parse exactly by hand
+					try {
+						return Float.parseFloat(decode(field).trim());
+					} catch (NumberFormatException e) {
+						return Float.NaN;
+					}
+				}
+			}
+			if (digits == 0) return Float.NaN;
+			double value = decimals == 0 ? mantissa : mantissa / POWERS_OF_TEN[decimals];
+			return (float) (negative ? -value : value);
+		}
+
+		/**
+		 * Parses a date written as yyyy-mm-dd, or returns null if the field isn't one.
+		 */
+		private LocalDate parseDate(int field) {
+			if (length(field) != 10 || at(field, 4) != '-' || at(field, 7) != '-') return null;
+			int year = digits(field, 0, 4);
+			int month = digits(field, 5, 7);
+			int day = digits(field, 8, 10);
+			if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) return null;
+			try {
+				return LocalDate.of(year, month, day);
+			} catch (DateTimeException e) {
+				return null;
+			}
+		}
+
+		private int digits(int field, int from, int to) {
+			int value = 0;
+			for (int i = from; i < to; i++) {
+				byte b = at(field, i);
+				if (b < '0' || b > '9') return -1;
+				value = value * 10 + (b - '0');
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,476 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Append-only journal of the edits made to a poll list, so edits survive a crash.
+ * Together with a <code>PollListSnapshot</code> it makes up the saved state of a
+ * poll list: the snapshot holds the list as it was at the last checkpoint and the
+ * journal every edit since.  On startup the snapshot is loaded and the journal
+ * replayed on top of it.
+ * <p>
+ * Recording an edit only copies it into a buffer, so it takes microseconds.  A
+ * background thread writes the buffer out and forces it to disk.  Edits recorded
+ * while a flush is in progress are written and flushed together by the next one, so
+ * a burst of edits pays for one or two flushes instead of one each.  Callers that
+ * have to know an edit is on disk can wait for it with <code>awaitDurable</code>.
+ * <p>
+ * The journal records updates of parties, new poll names, and polls that were added
+ * or removed.  Other edits, such as a new sample size of a poll that is already in
+ * the list, are only saved by the next checkpoint.  A poll list records its changes
+ * itself once the journal is set with <code>PollList.setJournal</code>, while each
+ * change holds the write lock of the list, so the records are in the order the
+ * changes were made.
+ * <p>
+ * Edits record absolute values, and parties are recorded by name, so replaying an
+ * edit that is already part of the snapshot does no harm and the journal does not
+ * depend on party ids.  An added poll is recorded with its id and everything in it,
+ * and is skipped on replay if the list already has a poll with that id.  Every
+ * record carries a checksum; replay stops at the first record that is incomplete
+ * or damaged, such as one cut short by a crash.
+ *
+ * @author Joshua Lee
+ */
+public class PollJournal implements AutoCloseable {
+	private static final int MAGIC = 0x504C4A4E;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+
+	private static final byte UPDATE_PARTY = 1;
+	private static final byte RENAME_POLL = 2;
+	private static final byte ADD_POLL = 3;
+	private static final byte REMOVE_POLL = 4;
+
+	private final FileChannel channel;
+	private final Thread writer;
+
+	// records waiting to be written, guarded by this
+	private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+	private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+	private long recorded;
+	private long durable;
+	private boolean closed;
+	private IOException failure;
+
+	private PollJournal(FileChannel channel) {
+		this.channel = channel;
+		writer = new Thread(this::writeLoop, "poll-journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens a journal for appending, creating it if it does not exist.  A damaged
+	 * tail left by a crash is cut off, so new edits follow the last complete one.
+	 *
+	 * @param file the journal file.
+	 * @return the open journal.
+	 * @throws IOException if the file can't be opened or is not a journal.
+	 */
+	public static PollJournal open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long end;
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+				header.flip();
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				end = HEADER_SIZE;
+			} else {
+				end = scan(channel, null);
+			}
+			channel.truncate(end);
+			channel.position(end);
+			channel.force(true);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new PollJournal(channel);
+	}
+
+	/**
+	 * Applies the edits in a journal to a poll list.
+	 *
+	 * @param file the journal file.  Nothing is replayed if it does not exist.
+	 * @param list the poll list, as loaded from the snapshot the journal belongs to.
+	 * @return the number of edits replayed.
+	 * @throws IOException if the file can't be read or is not a journal.
+	 */
+	public static int replay(Path file, PollList list) throws IOException {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			int[] count = new int[1];
+			scan(channel, record -> {
+				apply(record, list);
+				count[0]++;
+			});
+			return count[0];
+		}
+	}
+
+	/**
+	 * Saves a snapshot of a poll list and empties its journal, so the next startup
+	 * only has to load the snapshot.  Call it from the thread that makes the edits,
+	 * so no edit is recorded between saving the snapshot and emptying the journal.
+	 * The snapshot is written to a temporary file
+	 * first and then moved over the old one, so a crash leaves either the old or the
+	 * new snapshot, and in both cases the journal can be replayed on top of it.
+	 *
+	 * @param list the poll list.
+	 * @param snapshot the snapshot file.
+	 * @throws IOException if the snapshot can't be written.
+	 */
+	public void checkpoint(PollList list, Path snapshot) throws IOException {
+		Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+		PollListSnapshot.save(list, temporary);
+		try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			file.force(true);
+		}
+		Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		synchronized (this) {
+			awaitWriter();
+			channel.truncate(HEADER_SIZE);
+			channel.position(HEADER_SIZE);
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Records an update of the projections of a party.
+	 *
+	 * @param pollId the id of the poll in the poll list.
+	 * @param partyName the name of the party.
+	 * @param seats the projected number of seats.
+	 * @param percentageOfVotes the projected percentage of votes.
+	 * @return the sequence number of the edit, to pass to <code>awaitDurable</code>.
+	 */
+	public long recordPartyUpdate(int pollId, String partyName, float seats, float percentageOfVotes) {
+		byte[] name = partyName.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(1 + 4 + 4 + name.length + 8);
+		record.put(UPDATE_PARTY).putInt(pollId).putInt(name.length).put(name).putFloat(seats).putFloat(percentageOfVotes);
+		return append(record);
+	}
+
+	/**
+	 * Records a new name for a poll.
+	 *
+	 * @param pollId the id of the poll in the poll list.
+	 * @param pollName the new name of the poll.
+	 * @return the sequence number of the edit, to pass to <code>awaitDurable</code>.
+	 */
+	public long recordPollName(int pollId, String pollName) {
+		byte[] name = bytes(pollName);
+		ByteBuffer record = ByteBuffer.allocate(1 + 4 + 4 + name.length);
+		record.put(RENAME_POLL).putInt(pollId).putInt(name.length).put(name);
+		return append(record);
+	}
+
+	/**
+	 * Records a poll that was added to the poll list, with its details and parties.
+	 *
+	 * @param pollId the id the poll got in the poll list.
+	 * @param aPoll the poll, or a snapshot of it.
+	 * @return the sequence number of the edit, to pass to <code>awaitDurable</code>.
+	 */
+	public long recordPollAdded(int pollId, Poll aPoll) {
+		byte[] name = bytes(aPoll.getPollName());
+		Party[] parties = aPoll.getParties();
+		byte[][] partyNames = new byte[parties.length][];
+		int size = 1 + 4 + 4 + name.length + 4 + 8 + 8 + 4;
+		int numberOfParties = 0;
+		for (int index = 0; index < parties.length; index++) {
+			if (parties[index] != null) {
+				partyNames[index] = parties[index].getName().getBytes(StandardCharsets.UTF_8);
+				size += 4 + partyNames[index].length + 8 + 1 + (parties[index].colour() == null ? 0 : 32);
+				numberOfParties++;
+			}
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(size);
+		record.put(ADD_POLL).putInt(pollId).putInt(name.length).put(name)
+			.putInt(aPoll.getSampleSize()).putDouble(aPoll.getPollsterRating())
+			.putLong(aPoll.getFieldDate().toEpochDay()).putInt(numberOfParties);
+		for (int index = 0; index < parties.length; index++) {
+			Party aParty = parties[index];
+			if (aParty == null) {
+				continue;
+			}
+			record.putInt(partyNames[index].length).put(partyNames[index])
+				.putFloat(aParty.getProjectedNumberOfSeats()).putFloat(aParty.getProjectedPercentageOfVotes());
+			Color colour = aParty.colour();
+			if (colour == null) {
+				record.put((byte) 0);
+			} else {
+				record.put((byte) 1).putDouble(colour.getRed()).putDouble(colour.getGreen())
+					.putDouble(colour.getBlue()).putDouble(colour.getOpacity());
+			}
+		}
+		return append(record);
+	}
+
+	/**
+	 * Records a poll that was removed from the poll list.
+	 *
+	 * @param pollId the id the poll had in the poll list.
+	 * @return the sequence number of the edit, to pass to <code>awaitDurable</code>.
+	 */
+	public long recordPollRemoved(int pollId) {
+		ByteBuffer record = ByteBuffer.allocate(1 + 4 + 4);
+		record.put(REMOVE_POLL).putInt(pollId).putInt(0);
+		return append(record);
+	}
+
+	/**
+	 * Waits until an edit, and every edit recorded before it, is on disk.
+	 *
+	 * @param sequence the sequence number returned when the edit was recorded.
+	 * @throws IOException if the journal could not be written.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public synchronized void awaitDurable(long sequence) throws IOException, InterruptedException {
+		while (durable < sequence && failure == null) {
+			wait();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes out every recorded edit and closes the journal.
+	 *
+	 * @throws IOException if the journal could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @return the UTF-8 bytes of a name, none for a poll without a name.
+	 */
+	private static byte[] bytes(String name) {
+		return name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private synchronized long append(ByteBuffer payload) {
+		if (closed) {
+			System.out.println("ERROR: the journal is closed, the edit will not be saved.");
+			return recorded;
+		}
+		payload.flip();
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		int size = 8 + payload.remaining();
+		if (pending.remaining() < size) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + size));
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		pending.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+		recorded++;
+		notifyAll();
+		return recorded;
+	}
+
+	/**
+	 * Waits, holding the lock, until the writer has flushed everything recorded so far.
+	 */
+	private void awaitWriter() throws IOException {
+		long target = recorded;
+		try {
+			while (durable < target && failure == null) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the journal.", e);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Body of the writer thread: takes everything recorded since the last flush,
+	 * writes it and forces it to disk, one group at a time.
+	 */
+	private void writeLoop() {
+		while (true) {
+			long group;
+			synchronized (this) {
+				while (pending.position() == 0 && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pending.position() == 0) {
+					return;
+				}
+				// swap the buffers so edits can be recorded while this group is written
+				ByteBuffer full = pending;
+				pending = writing;
+				writing = full;
+				group = recorded;
+			}
+
+			try {
+				writing.flip();
+				while (writing.hasRemaining()) {
+					channel.write(writing);
+				}
+				channel.force(false);
+				writing.clear();
+			} catch (IOException e) {
+				System.out.println("ERROR: the journal could not be written: " + e.getMessage());
+				synchronized (this) {
+					failure = e;
+					notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				durable = group;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of a journal, checking the header and every checksum.
+	 *
+	 * @param visitor called with the payload of every valid record, or null.
+	 * @return the position just after the last valid record.
+	 */
+	private static long scan(FileChannel channel, RecordVisitor visitor) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("The journal is too large, it should have been checkpointed.");
+		}
+		ByteBuffer data = ByteBuffer.allocate((int) size);
+		while (data.hasRemaining()) {
+			if (channel.read(data, data.position()) < 0) break;
+		}
+		data.flip();
+		if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+			throw new IOException("Not a poll journal.");
+		}
+		int version = data.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported poll journal version " + version + ".");
+		}
+
+		CRC32 crc = new CRC32();
+		while (data.remaining() >= 8) {
+			int start = data.position();
+			int length = data.getInt();
+			int checksum = data.getInt();
+			if (length < 1 || length > data.remaining()) {
+				return start;
+			}
+			ByteBuffer payload = data.slice();
+			payload.limit(length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				return start;
+			}
+			if (visitor != null) {
+				visitor.visit(payload);
+			}
+			data.position(start + 8 + length);
+		}
+		return data.position();
+	}
+
+	private static void apply(ByteBuffer record, PollList list) {
+		byte type = record.get();
+		int pollId = record.getInt();
+		byte[] name = new byte[record.getInt()];
+		record.get(name);
+		String text = new String(name, StandardCharsets.UTF_8);
+		if (type == UPDATE_PARTY) {
+			float seats = record.getFloat();
+			float percentageOfVotes = record.getFloat();
+			list.updateParty(pollId, PartyRegistry.getInstance().idOf(text), seats, percentageOfVotes);
+		} else if (type == RENAME_POLL) {
+			list.setPollName(pollId, text);
+		} else if (type == ADD_POLL) {
+			Poll aPoll = readPoll(record, text);
+			// the poll is already in the list if the snapshot was saved after it was added
+			if (list.indexOfPoll(pollId) < 0) {
+				list.addPoll(aPoll, pollId);
+			}
+		} else if (type == REMOVE_POLL) {
+			int index = list.indexOfPoll(pollId);
+			if (index >= 0) {
+				list.removePoll(index);
+			}
+		} else {
+			System.out.println("ERROR: skipped a journal record of unknown type " + type + ".");
+		}
+	}
+
+	/**
+	 * Reads the details and parties of an added poll from its record.
+	 */
+	private static Poll readPoll(ByteBuffer record, String pollName) {
+		int sampleSize = record.getInt();
+		double pollsterRating = record.getDouble();
+		long fieldDate = record.getLong();
+		int numberOfParties = record.getInt();
+		Poll aPoll = new Poll(pollName, Math.max(1, numberOfParties));
+		aPoll.setSampleSize(sampleSize);
+		aPoll.setPollsterRating(pollsterRating);
+		aPoll.setFieldDate(LocalDate.ofEpochDay(fieldDate));
+		for (int party = 0; party < numberOfParties; party++) {
+			byte[] name = new byte[record.getInt()];
+			record.get(name);
+			Party aParty = new Party(new String(name, StandardCharsets.UTF_8));
+			aParty.setProjectedNumberOfSeats(record.getFloat());
+			aParty.setProjectedPercentageOfVotes(record.getFloat());
+			if (record.get() != 0) {
+				aParty.setColour(new Color(record.getDouble(), record.getDouble(), record.getDouble(), record.getDouble()));
+			}
+			aPoll.addParty(aParty);
+		}
+		return aPoll;
+	}
+
+	private interface RecordVisitor {
+		void visit(ByteBuffer payload);
+	}
+}
@@ -1,5 +1,19 @@
 package model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import javafx.scene.paint.Color;
+
 /**
  * The PollList class represents a collection of polls
  * from the same election.
@@ -10,11 +24,57 @@ package model;
  * @version 2.1
  */
 public class PollList {
+	/** The number of most recent polls in the rolling aggregate, unless set otherwise. */
+	public static final int DEFAULT_ROLLING_WINDOW = 5;
+	
 	private static final int MAX_STARS_FOR_VISUALIZATION = 18;
 	
 	private Poll[] polls;
+	private int size;
 	private int numOfSeats;
 	
+	// Running sums per party, indexed by party id, kept up
+	// to date by the polls and parties as they change.
+	private PartyTotals[] partyTotals = new PartyTotals[0];
+	// Number of polls in the list that could not be tracked, because they were
+	// already tracked by another list or share parties with another poll.
+	private int untrackedPolls;
+	
+	// Column store holding the polls instead of the polls array, if
+	// this list was created for columnar storage.
+	private PollMatrix matrix;
+	
+	// Aggregator used to read the polls in parallel when the running
+	// totals can't be used, if one was set.
+	private ParallelAggregator parallelAggregator;
+	
+	// How polls are weighted in the weighted aggregate, null if the weighted
+	// totals are not kept, and the date the poll weights are relative to.
+	private PollWeighting weighting;
+	private long anchorDay;
+	
+	// Aggregate of the most recent polls, unless the rolling window was turned off.
+	private RollingAggregate rolling;
+	
+	// Stable ids of the polls, by position, and the position + 1 of each
+	// poll id, 0 once that poll has been removed.  Ids are never reused.
+	private int[] pollIds = new int[0];
+	private int[] indexByPollId = new int[0];
+	private int nextPollId;
+	
+	// Lock taken by the changes made through the list, and validated by
+	// the optimistic reads, if the list is in concurrent mode.
+	private StampedLock lock;
+	
+	// Listeners told about changes, and the changes of the batch that
+	// is open, if any, guarded by pendingEvents.
+	private final CopyOnWriteArrayList<PollListListener> listeners = new CopyOnWriteArrayList<>();
+	private final LinkedHashSet<PollListEvent> pendingEvents = new LinkedHashSet<>();
+	private int batchDepth;
+	
+	// Journal the changes made through the list are recorded in, if one was set.
+	private PollJournal journal;
+	
 	/**
 	 * Class constructor
 	 * 
@@ -22,9 +82,10 @@ public class PollList {
 	 * Postcondition: Constructs an object with the specified
 	 * values for the number of polls and seats if greater than
 	 * 1, else the poll array size is set to 5, and the number
-	 * of sets is set to 10.
+	 * of sets is set to 10.  The poll array grows when more
+	 * polls are added, so the number of polls is only a hint.
 	 * 
-	 * @param aNumOfPolls The number of polls in the poll list.
+	 * @param aNumOfPolls The number of polls to allocate room for.
 	 * @param aNumOfSeats The number of seats in the poll list.
 	 */
 	public PollList(int aNumOfPolls, int aNumOfSeats) {
@@ -43,197 +104,1485 @@ public class PollList {
 		} else {
 			numOfSeats = 10;
 		}
+		
+		rolling = new RollingAggregate(DEFAULT_ROLLING_WINDOW);
+	}
+	
+	/**
+	 * Class constructor for a poll list that keeps its polls in columnar storage:
+	 * the projections of every poll are stored in contiguous float arrays with a
+	 * column per party, instead of as separate Poll and Party objects.  This takes
+	 * a fraction of the memory for very large poll lists.
+	 * <p>
+	 * Polls added to the list are copied into the store, and the polls returned by
+	 * <code>toArray()</code> are views that read and write the store.  Only parties
+	 * named here can be part of the polls.  The store grows as polls are added.
+	 * 
+	 * Precondition: none
+	 * Postcondition: Constructs an empty columnar poll list with room
+	 * for the specified number of polls.
+	 * 
+	 * @param aNumOfPolls The number of polls to allocate room for.
+	 * @param aNumOfSeats The number of seats in the poll list.
+	 * @param partyNames The names of the parties in the election.
+	 * @param partyColours The colours of the parties, matched to the names by index.
+	 */
+	public PollList(int aNumOfPolls, int aNumOfSeats, String[] partyNames, Color[] partyColours) {
+		this(1, aNumOfSeats);
+		polls = new Poll[0];
+		matrix = new PollMatrix(partyNames, partyColours, aNumOfPolls);
 	}
 	
 	/**
 	 * A getter for <code>polls</code>.
 	 * 
 	 * Precondition: none
-	 * Postcondition: The array <code>polls</code> is returned.
+	 * Postcondition: An array holding the polls in the list, in the
+	 * order they were added, is returned. For a columnar poll list,
+	 * an array of views of the stored polls is returned.
 	 * 
 	 * @return The polls in the poll list as an array. 
 	 */
 	public Poll[] toArray() {
-		return polls;
+		if (matrix != null) {
+			Poll[] views = new Poll[matrix.getRows()];
+			for (int row = 0; row < views.length; row++) {
+				views[row] = matrix.getPoll(row);
+			}
+			return views;
+		}
+		return Arrays.copyOf(polls, size);
 	}
 	
 	/**
-	 * A getter for <code>numOfSeats</code>.
+	 * A getter for the number of polls in the list.
 	 * 
 	 * Precondition: none
-	 * Postcondition: <code>numOfSeats</code> is returned.
+	 * Postcondition: The number of polls is returned.
 	 * 
-	 * @return The number of seats in the poll list.
+	 * @return The number of polls in the poll list.
 	 */
-	public int getNumOfSeats() {
-		return numOfSeats;
+	public int size() {
+		if (matrix != null) {
+			return matrix.getRows();
+		}
+		return size;
+	}
+	
+	/**
+	 * Gets a single poll without copying the list.
+	 * 
+	 * Precondition: <code>index</code> is between 0 and <code>size() - 1</code>
+	 * Postcondition: The poll at the given position is returned.
+	 * 
+	 * @param index The position of the poll in the list.
+	 * @return The poll at the given position.
+	 */
+	public Poll getPoll(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("No poll at index " + index + ", the list has " + size() + " polls.");
+		}
+		if (matrix != null) {
+			return matrix.getPoll(index);
+		}
+		return polls[index];
+	}
+	
+	/**
+	 * Gets the id of the poll at a given position.  A poll keeps its id
+	 * while other polls are added and removed, so the id can be used to
+	 * refer to the poll later on.
+	 * 
+	 * Precondition: <code>index</code> is between 0 and <code>size() - 1</code>
+	 * Postcondition: The id of the poll is returned.
+	 * 
+	 * @param index The position of the poll.
+	 * @return The id of the poll.
+	 */
+	public int getPollId(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("No poll at index " + index + ", the list has " + size() + " polls.");
+		}
+		return pollIds[index];
 	}
 	
 	/**
-	 * Adds a poll to the poll list if the poll is not null or 
-	 * the poll list is not full.
-	 * An error message will be printed if the poll list is full
-	 * or the poll is null.
+	 * Finds the position of a poll from its id.
 	 * 
 	 * Precondition: none
-	 * Postcondition: A poll is added if the poll list is not null 
-	 * and has space, else it does not change the poll list and
-	 * prints an error message.
+	 * Postcondition: The position of the poll is returned, or -1
+	 * if no poll in the list has that id.
 	 * 
-	 * @param aPoll a poll that is to be added to the poll list.
+	 * @param pollId The id of the poll.
+	 * @return The position of the poll, or -1 if there is no such poll.
 	 */
-	public void addPoll(Poll aPoll) {
-		// Checks if aPoll is null and prints an error message if true.
-		if (aPoll == null) {
-			System.out.println("ERROR: The argument is null. The list will be left unchanged.");
-		} else {
-			boolean hasRoom = false;
-			int index = 0;
-			
-			// Checks the poll list for the first occurrence 
-			// of an empty (null) entry.
-			for (int i = 0; i < polls.length && hasRoom == false; i++) {
-				if (polls[i] == null) {
-					hasRoom = true;
-					index = i;
+	public int indexOfPoll(int pollId) {
+		if (pollId < 0 || pollId >= nextPollId) {
+			return -1;
+		}
+		return indexByPollId[pollId] - 1;
+	}
+	
+	/**
+	 * Gets a poll from its id.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The poll with the id is returned, or null if
+	 * no poll in the list has that id.
+	 * 
+	 * @param pollId The id of the poll.
+	 * @return The poll with that id, or null if there is no such poll.
+	 */
+	public Poll getPollById(int pollId) {
+		int index = indexOfPoll(pollId);
+		return index < 0 ? null : getPoll(index);
+	}
+	
+	/**
+	 * Gets a copy of a poll, taken while no change is made to the
+	 * list, that can be read on any thread while the list changes.
+	 * 
+	 * Precondition: none
+	 * Postcondition: A copy of the poll with the id is returned, or
+	 * null if no poll in the list has that id.
+	 * 
+	 * @param pollId The id of the poll.
+	 * @return A copy of the poll, not part of any list, or null if there is no such poll.
+	 */
+	public Poll getPollSnapshot(int pollId) {
+		return read(() -> {
+			Poll aPoll = getPollById(pollId);
+			return aPoll == null ? null : copyOf(aPoll);
+		});
+	}
+	
+	/**
+	 * Gets the poll at a position to read it, which is the poll
+	 * itself, or a copy of it in concurrent mode so it can't change
+	 * while it is read.
+	 * 
+	 * @param index The position of the poll.
+	 * @return The poll, or null if there is no longer a poll at that position.
+	 */
+	Poll pollForReading(int index) {
+		if (lock == null) {
+			return index < size() ? getPoll(index) : null;
+		}
+		return read(() -> index < size() ? copyOf(getPoll(index)) : null);
+	}
+	
+	/**
+	 * Turns the concurrent mode on or off.  In concurrent mode, the
+	 * changes made through the list take a write lock, while the
+	 * aggregates, snapshots and visualizations are read without
+	 * locking: a read is checked against the lock afterwards, and
+	 * only done again under a read lock if a change came in between.
+	 * Readers on other threads, such as charts, exports and queries,
+	 * then never see a change half made and rarely wait for one.
+	 * 
+	 * Changes made to a Poll or Party directly, instead of through
+	 * <code>updateParty</code> and <code>setPollName</code>, don't
+	 * take the lock, so they should only be made in normal mode.
+	 * 
+	 * Precondition: The list is not yet used by more than one thread.
+	 * Postcondition: The list is in concurrent mode if
+	 * <code>concurrent</code> is true.
+	 * 
+	 * @param concurrent true to turn the concurrent mode on.
+	 */
+	public void setConcurrent(boolean concurrent) {
+		lock = concurrent ? new StampedLock() : null;
+	}
+	
+	/**
+	 * Checks if the list is in concurrent mode.
+	 * 
+	 * @return true if the list is in concurrent mode.
+	 */
+	public boolean isConcurrent() {
+		return lock != null;
+	}
+	
+	/**
+	 * Reads from the list.  In concurrent mode the read is first done
+	 * optimistically, and done again under a read lock if a change was
+	 * made meanwhile.  A change can leave the arrays in a state the
+	 * optimistic read trips over, which counts as a change as well.
+	 * The reader must not change the list, since it may run twice.
+	 * 
+	 * @param reader Reads what is needed from the list.
+	 * @return What the reader returned.
+	 */
+	private <T> T read(Supplier<T> reader) {
+		StampedLock readLock = lock;
+		if (readLock == null) {
+			return reader.get();
+		}
+		long stamp = readLock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				T result = reader.get();
+				if (readLock.validate(stamp)) {
+					return result;
 				}
+			} catch (RuntimeException e) {
+				// A change was made during the read, which is done again below.
 			}
-			
-			// Checks if polls is full, if true, an error message is printed,
-			// else it adds aPoll to the array at the first empty spot.
-			if (hasRoom == true) {
-				polls[index] = aPoll;
-			} else {
-				System.out.println("ERROR: There is no more room in the polls array and no further polls can be added.");
+		}
+		stamp = readLock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			readLock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Takes the write lock in concurrent mode.
+	 * 
+	 * @return The stamp to unlock with, 0 if the list is not in concurrent mode.
+	 */
+	private long lockForWriting() {
+		StampedLock writeLock = lock;
+		return writeLock == null ? 0 : writeLock.writeLock();
+	}
+	
+	/**
+	 * Releases the write lock taken by <code>lockForWriting</code>.
+	 * 
+	 * @param stamp The stamp returned by <code>lockForWriting</code>.
+	 */
+	private void unlockForWriting(long stamp) {
+		if (stamp != 0) {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Copies a poll and its parties into new objects that are not
+	 * part of any list.
+	 * 
+	 * @param aPoll The poll to copy.
+	 * @return The copy.
+	 */
+	private static Poll copyOf(Poll aPoll) {
+		Party[] parties = aPoll.getParties();
+		Poll copy = new Poll(aPoll.getPollName(), Math.max(1, parties.length));
+		copy.setSampleSize(aPoll.getSampleSize());
+		copy.setPollsterRating(aPoll.getPollsterRating());
+		copy.setFieldDate(aPoll.getFieldDate());
+		for (Party party : parties) {
+			if (party != null) {
+				Party partyCopy = new Party(party.getName(), party.getProjectedNumberOfSeats(), party.getProjectedPercentageOfVotes());
+				partyCopy.setColour(party.colour());
+				copy.addParty(partyCopy);
 			}
 		}
+		return copy;
 	}
 	
 	/**
-	 * Gets the data of a specified party and returns
-	 * the average of the data from all the polls it is in.
+	 * Sets the journal that the changes made through the list are recorded
+	 * in: party updates and new poll names made with <code>updateParty</code>
+	 * and <code>setPollName</code>, and polls that are added or removed.
+	 * A change is recorded while it holds the write lock, so the journal has
+	 * the changes in the order they were made, even when several threads make
+	 * them in concurrent mode.  Recording only copies the change into a
+	 * buffer of the journal, so the lock is not held much longer.
 	 * 
 	 * Precondition: none
-	 * Postcondition: A <code>Party</code> object with the average data of a
-	 * given party, if it exists in the poll list is returned, 
-	 * else, a null <code>Party</code> is returned.
+	 * Postcondition: <code>journal</code> is set.
 	 * 
-	 * @param name The name of a party whose data will be averaged.
-	 * @return An instance of Party that contains the data average of a specified party.
+	 * @param aJournal The journal to record the changes in, or null to stop
+	 * recording them.
 	 */
-	public Party getAveragePartyData(String name) {
-		Party avgParty = new Party(name);
-		Party tempParty = new Party(name);
-		float avgSeats = 0;
-		float avgVotes = 0;
-		int partyOccurance = 0;
-
-		// Adds up the number of seats and votes for a given party from
-		// the polls only if it is in the poll.
-		for (int i = 0; i < polls.length; i++) {
-			tempParty = polls[i].getParty(name);
-			if (tempParty != null) {
-				avgSeats += tempParty.getProjectedNumberOfSeats();
-				avgVotes += tempParty.getProjectedPercentageOfVotes();
-				partyOccurance++;
-			}	
+	public void setJournal(PollJournal aJournal) {
+		long stamp = lockForWriting();
+		try {
+			journal = aJournal;
+		} finally {
+			unlockForWriting(stamp);
 		}
-
-		// Sets the seats and votes in avgParty to be the average
-		// seats and votes of a given party.
-		if (partyOccurance != 0) {
-			avgParty.setProjectedNumberOfSeats(avgSeats / partyOccurance);
-			avgParty.setProjectedPercentageOfVotes(avgVotes / partyOccurance);
-			avgParty.setColour(polls[0].getParty(name).getPartyColour());
+	}
+	
+	/**
+	 * Registers a listener that is told about every change made to
+	 * the list from now on: polls added, removed and renamed, and
+	 * parties added to, taken out of and changed in its polls.
+	 * 
+	 * Changes made through the list are always told.  Changes made
+	 * directly on a Poll or Party are told for the polls this list
+	 * keeps running totals for, which are all polls that don't share
+	 * parties with another poll and are in no other list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: <code>listener</code> is told about the changes.
+	 * 
+	 * @param listener The listener.
+	 */
+	public void addListener(PollListListener listener) {
+		if (listener == null) {
+			System.out.println("ERROR: The listener is null. No listener will be added.");
+			return;
 		}
-		
-		return avgParty;
+		listeners.add(listener);
 	}
 	
 	/**
-	 * Gets the aggregate of all polls in the <code>names</code> list.
+	 * Stops telling a listener about changes.
+	 * 
+	 * @param listener The listener that was registered.
+	 */
+	public void removeListener(PollListListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts a batch of changes.  The changes made until the matching
+	 * <code>endBatch</code> are told to the listeners in one call, with
+	 * each change told once, however often it was made.  Batches can
+	 * be nested; the changes are told when the outermost one ends.
+	 * Every change made to the list by a method of the list is one
+	 * batch already.
+	 * 
+	 * Batches are counted for the list as a whole, so changes made on
+	 * other threads while a batch is open are told with that batch.
 	 * 
 	 * Precondition: none
-	 * Postcondition: Returns a poll representing the
-	 * aggregate of all polls in the list.
+	 * Postcondition: Changes are held until the batch ends.
+	 */
+	public void beginBatch() {
+		synchronized (pendingEvents) {
+			batchDepth++;
+		}
+	}
+	
+	/**
+	 * Ends a batch of changes started with <code>beginBatch</code>,
+	 * and tells the listeners about its changes if it was the
+	 * outermost batch.
 	 * 
-	 * @param names An String array of the party names.
-	 * @return A poll that represents that aggregate data.
+	 * Precondition: A batch was started.
+	 * Postcondition: The changes of the batch are told, unless an
+	 * outer batch is still open.
 	 */
-	public Poll getAggregatePoll(String[] names) {
-		Poll aggregate = new Poll("Aggregate", names.length);
-		
-		// Adds the average data of a party in names to aggregate.
-		for (int i = 0; i < names.length; i++) {
-			aggregate.addParty(getAveragePartyData(names[i]));
+	public void endBatch() {
+		ArrayList<PollListEvent> events;
+		synchronized (pendingEvents) {
+			if (batchDepth == 0) {
+				System.out.println("ERROR: No batch was started. The call will be ignored.");
+				return;
+			}
+			batchDepth--;
+			if (batchDepth > 0 || pendingEvents.isEmpty()) {
+				return;
+			}
+			events = new ArrayList<>(pendingEvents);
+			pendingEvents.clear();
 		}
-		
-		return aggregate;
+		tell(events);
 	}
 	
 	/**
-	 * Returns the text visualization of the parties' 
-	 * seats in the poll list.
+	 * Records a change for the listeners, and tells them at once if no
+	 * batch is open.  Nothing is recorded if there are no listeners,
+	 * so changes cost nothing extra then.
+	 * 
+	 * @param type The kind of change.
+	 * @param pollId The id of the poll that changed.
+	 * @param partyId The id of the party that changed, or -1.
+	 */
+	private void publish(PollListEvent.Type type, int pollId, int partyId) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		PollListEvent event = new PollListEvent(type, pollId, partyId);
+		synchronized (pendingEvents) {
+			if (batchDepth > 0) {
+				pendingEvents.add(event);
+				return;
+			}
+		}
+		ArrayList<PollListEvent> events = new ArrayList<>(1);
+		events.add(event);
+		tell(events);
+	}
+	
+	/**
+	 * Tells every listener about changes.  A listener that fails does
+	 * not keep the others from being told.
+	 * 
+	 * @param events The changes.
+	 */
+	private void tell(ArrayList<PollListEvent> events) {
+		List<PollListEvent> readOnly = Collections.unmodifiableList(events);
+		for (PollListListener listener : listeners) {
+			try {
+				listener.pollListChanged(this, readOnly);
+			} catch (RuntimeException e) {
+				System.out.println("ERROR: A poll list listener failed: " + e);
+			}
+		}
+	}
+	
+	/**
+	 * Called by a poll this list keeps running totals for after one of
+	 * its parties was added, taken out or changed.
+	 * 
+	 * @param aPoll The poll.
+	 * @param type The kind of change.
+	 * @param partyId The id of the party.
+	 */
+	void partyEvent(Poll aPoll, PollListEvent.Type type, int partyId) {
+		publish(type, aPoll.trackedPollId, partyId);
+	}
+	
+	/**
+	 * Called by a poll this list keeps running totals for after it was
+	 * renamed.
+	 * 
+	 * @param aPoll The poll.
+	 */
+	void pollRenamed(Poll aPoll) {
+		publish(PollListEvent.Type.POLL_RENAMED, aPoll.trackedPollId, -1);
+	}
+	
+	/**
+	 * Updates the projections of a party in a poll, finding both by
+	 * id instead of comparing names.  The aggregates of the list are
+	 * updated with the new values.
 	 * 
 	 * Precondition: none
-	 * Postcondition: Return a string that visualizes
-	 * the parties' seats.
+	 * Postcondition: The party is updated, or an error message is
+	 * printed if the poll or the party doesn't exist.  Values the
+	 * party rejects are left unchanged.
 	 * 
-	 * @return A string that visualizes the parties' seats in the poll list.
+	 * @param pollId The id of the poll.
+	 * @param partyId The id of the party, as given by <code>Party.getId()</code>.
+	 * @param seats The projected number of seats.
+	 * @param percentageOfVotes The projected percentage of votes, between 0 and 1.
+	 * @return true if the poll and the party were found.
 	 */
-	public String textVisualizationBySeats() {
-		String seatVisual = "";
-		double numSeatsPerStar = Math.ceil((float)numOfSeats / MAX_STARS_FOR_VISUALIZATION);
-		
-		// Concatenates the text visualization by seats
-		// of the parties in the poll list if not null.
-		for (int i = 0; i < polls.length; i++) {
-			if (polls[i] != null) {
-				seatVisual += polls[i].textVisualizationBySeats(MAX_STARS_FOR_VISUALIZATION, numSeatsPerStar);
-				seatVisual += "\n";
+	public boolean updateParty(int pollId, int partyId, float seats, float percentageOfVotes) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			Poll aPoll = getPollById(pollId);
+			if (aPoll == null) {
+				System.out.println("ERROR: There is no poll with id " + pollId + " in the list.");
+				return false;
+			}
+			Party aParty = aPoll.getParty(partyId);
+			if (aParty == null) {
+				System.out.println("ERROR: The poll " + aPoll.getPollName() + " has no party with id " + partyId + ".");
+				return false;
 			}
+			aParty.setProjectedNumberOfSeats(seats);
+			aParty.setProjectedPercentageOfVotes(percentageOfVotes);
+			if (journal != null) {
+				// Records the values the party accepted.
+				journal.recordPartyUpdate(pollId, aParty.getName(),
+						aParty.getProjectedNumberOfSeats(), aParty.getProjectedPercentageOfVotes());
+			}
+			// Tracked polls tell the change themselves.
+			if (!aPoll.isTrackedBy(this)) {
+				publish(PollListEvent.Type.PARTY_CHANGED, pollId, partyId);
+			}
+			return true;
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
 		}
-		
-		return seatVisual;
 	}
 	
 	/**
-	 * Returns the text visualization of the parties'
-	 * votes in the poll list.
+	 * Renames a poll, finding it by id.
 	 * 
 	 * Precondition: none
-	 * Postcondition: Return a string that visualizes
-	 * the parties' votes.
+	 * Postcondition: The poll is renamed, or an error message is
+	 * printed if there is no such poll.
 	 * 
-	 * @return A string that visualizes the parties' votes in the poll list.
+	 * @param pollId The id of the poll.
+	 * @param nameOfPoll The new name of the poll.
+	 * @return true if the poll was found.
 	 */
-	public String textVisualizationByVotes() {
-		String voteVisual = "";
-		double percentVotePerStar = Math.ceil(100.0 / MAX_STARS_FOR_VISUALIZATION);
-		
-		// Concatenates the text visualization by votes
-		// of the parties in the poll list if not null
-		// and adds a new line escape code.
-		for (int i = 0; i < polls.length; i++) {
-			if (polls[i] != null) {
-				voteVisual += polls[i].textVisualizationByVotes(MAX_STARS_FOR_VISUALIZATION, percentVotePerStar);
-				voteVisual += "\n";
+	public boolean setPollName(int pollId, String nameOfPoll) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			Poll aPoll = getPollById(pollId);
+			if (aPoll == null) {
+				System.out.println("ERROR: There is no poll with id " + pollId + " in the list.");
+				return false;
+			}
+			aPoll.setPollName(nameOfPoll);
+			if (journal != null) {
+				journal.recordPollName(pollId, aPoll.getPollName());
 			}
+			// Tracked polls tell the change themselves.
+			if (!aPoll.isTrackedBy(this)) {
+				publish(PollListEvent.Type.POLL_RENAMED, pollId, -1);
+			}
+			return true;
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
 		}
-		
-		return voteVisual;
 	}
 	
 	/**
-	 * Returns the string representation of the seats in the poll list.
+	 * A getter for <code>numOfSeats</code>.
 	 * 
 	 * Precondition: none
-	 * Postcondition: Returns a formatted string of the number of seats 
-	 * in the poll list.
+	 * Postcondition: <code>numOfSeats</code> is returned.
 	 * 
-	 * @return A string that contains the total seats in the poll list and the number of seats held by a given party
+	 * @return The number of seats in the poll list.
 	 */
-	public String toString() {
-		return "Number of seats: " + numOfSeats + "\n" + textVisualizationBySeats();
+	public int getNumOfSeats() {
+		return numOfSeats;
+	}
+	
+	/**
+	 * Sets the aggregator used when the aggregate has to be computed by
+	 * reading every poll, which happens when the list holds polls it can't
+	 * keep running totals for.  The polls are then summed in chunks on the
+	 * aggregator's threads instead of on the calling thread.
+	 * 
+	 * Precondition: none
+	 * Postcondition: <code>parallelAggregator</code> is set.
+	 * 
+	 * @param aParallelAggregator The aggregator to use, or null to read
+	 * the polls on the calling thread.
+	 */
+	public void setParallelAggregator(ParallelAggregator aParallelAggregator) {
+		parallelAggregator = aParallelAggregator;
+	}
+	
+	/**
+	 * A getter for the column store of a columnar poll list.
+	 * 
+	 * @return The column store, or null if the polls are kept as objects.
+	 */
+	PollMatrix getMatrix() {
+		return matrix;
+	}
+	
+	/**
+	 * Adds a poll to the end of the poll list if the poll is not null.
+	 * An error message will be printed if the poll is null.
+	 * When the poll array is full it is replaced by one twice the size,
+	 * so adding a poll takes constant time on average.
+	 * 
+	 * Precondition: none
+	 * Postcondition: A poll is added if it is not null, else it
+	 * does not change the poll list and prints an error message.
+	 * 
+	 * @param aPoll a poll that is to be added to the poll list.
+	 */
+	public void addPoll(Poll aPoll) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			appendPoll(aPoll);
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Adds a poll to the end of the poll list, for the methods that
+	 * already hold the write lock.
+	 * 
+	 * @param aPoll a poll that is to be added to the poll list.
+	 */
+	private void appendPoll(Poll aPoll) {
+		// Checks if aPoll is null and prints an error message if true.
+		if (aPoll == null) {
+			System.out.println("ERROR: The argument is null. The list will be left unchanged.");
+		} else if (matrix != null) {
+			// Copies the poll into a new row of the column store.
+			int row = matrix.appendRow(aPoll.getPollName());
+			for (Party party : aPoll.getParties()) {
+				if (party == null) {
+					continue;
+				}
+				int column = matrix.column(party.getId());
+				if (column < 0) {
+					System.out.println("ERROR: " + party.getName() + " is not a party of this poll list and will be left out.");
+				} else {
+					matrix.set(row, column, party.getProjectedNumberOfSeats(), party.getProjectedPercentageOfVotes());
+				}
+			}
+			assignPollId(row);
+			if (journal != null) {
+				journal.recordPollAdded(pollIds[row], matrix.getPoll(row));
+			}
+			publish(PollListEvent.Type.POLL_ADDED, pollIds[row], -1);
+		} else {
+			// Doubles the poll array when it is full.
+			if (size == polls.length) {
+				ensureCapacity(2 * size);
+			}
+			polls[size] = aPoll;
+			assignPollId(size);
+			size++;
+			if (aPoll.claim(this)) {
+				aPoll.trackedPollId = pollIds[size - 1];
+			} else {
+				untrackedPolls++;
+			}
+			if (journal != null) {
+				journal.recordPollAdded(pollIds[size - 1], aPoll);
+			}
+			publish(PollListEvent.Type.POLL_ADDED, pollIds[size - 1], -1);
+			if (rolling != null) {
+				rolling.add(aPoll);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a poll that keeps the id it had before, such as a poll of a
+	 * saved poll list that is being loaded.  Ids have to be given in
+	 * increasing order.
+	 * 
+	 * @param aPoll The poll to add.
+	 * @param pollId The id of the poll, higher than the ids in the list.
+	 */
+	void addPoll(Poll aPoll, int pollId) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			if (pollId < nextPollId) {
+				System.out.println("ERROR: The poll id " + pollId + " is already taken. The poll will get a new id.");
+			} else {
+				nextPollId = pollId;
+			}
+			appendPoll(aPoll);
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Gets the id the next poll added to the list will get.
+	 * 
+	 * @return The next poll id.
+	 */
+	int getNextPollId() {
+		return nextPollId;
+	}
+	
+	/**
+	 * Makes sure the next poll added to the list gets at least the
+	 * given id, so ids of polls that were removed are not reused.
+	 * 
+	 * @param pollId The lowest id for the next poll.
+	 */
+	void reservePollIds(int pollId) {
+		nextPollId = Math.max(nextPollId, pollId);
+	}
+	
+	/**
+	 * Adds several polls to the end of the poll list.  Room for all
+	 * of them is made once, before any of them is added.  Null
+	 * polls are skipped with an error message.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The polls that are not null are added in order.
+	 * 
+	 * @param newPolls The polls that are to be added to the poll list.
+	 */
+	public void addAll(Poll[] newPolls) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			if (matrix != null) {
+				matrix.ensureCapacity(matrix.getRows() + newPolls.length);
+			} else {
+				ensureCapacity(size + newPolls.length);
+			}
+			for (Poll aPoll : newPolls) {
+				appendPoll(aPoll);
+			}
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Removes the poll at a given position from the poll list.  The
+	 * polls after it move up one position, so the list stays in order
+	 * without gaps.
+	 * 
+	 * Precondition: <code>index</code> is between 0 and <code>size() - 1</code>
+	 * Postcondition: The poll is removed and its data is no longer part
+	 * of the aggregate.
+	 * 
+	 * @param index The position of the poll to remove.
+	 * @return The poll that was removed. For a columnar poll list, this is
+	 * a copy of the poll, since the view it was read from no longer exists.
+	 */
+	public Poll removePoll(int index) {
+		beginBatch();
+		long stamp = lockForWriting();
+		try {
+			return takeOutPoll(index);
+		} finally {
+			unlockForWriting(stamp);
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Removes the poll at a given position from the poll list, for
+	 * <code>removePoll</code> once it holds the write lock.
+	 * 
+	 * @param index The position of the poll to remove.
+	 * @return The poll that was removed, or a copy of it for a columnar poll list.
+	 */
+	private Poll takeOutPoll(int index) {
+		Poll removed = getPoll(index);
+		if (journal != null) {
+			journal.recordPollRemoved(pollIds[index]);
+		}
+		publish(PollListEvent.Type.POLL_REMOVED, pollIds[index], -1);
+		retirePollId(index);
+		if (matrix != null) {
+			Poll copy = copyOf(removed);
+			matrix.removeRow(index);
+			return copy;
+		}
+		
+		// Moves the polls after index up by one and clears the last slot.
+		System.arraycopy(polls, index + 1, polls, index, size - index - 1);
+		size--;
+		polls[size] = null;
+		
+		// Takes the poll out of the running totals, or out of the
+		// count of untracked polls if it was not tracked by this list.
+		if (!removed.release(this)) {
+			untrackedPolls--;
+		}
+		if (rolling != null) {
+			fillRollingWindow(rolling.getWindowSize());
+		}
+		return removed;
+	}
+	
+	/**
+	 * Gives the poll that was just added at a position the next id.
+	 * 
+	 * @param index The position of the new poll.
+	 */
+	private void assignPollId(int index) {
+		if (index == pollIds.length) {
+			pollIds = Arrays.copyOf(pollIds, Math.max(4, 2 * index));
+		}
+		if (nextPollId >= indexByPollId.length) {
+			indexByPollId = Arrays.copyOf(indexByPollId, Math.max(4, 2 * nextPollId));
+		}
+		pollIds[index] = nextPollId;
+		indexByPollId[nextPollId] = index + 1;
+		nextPollId++;
+	}
+	
+	/**
+	 * Forgets the id of the poll at a position that is being removed,
+	 * and moves the ids of the polls after it up by one.
+	 * 
+	 * @param index The position of the poll that is being removed.
+	 */
+	private void retirePollId(int index) {
+		int count = size();
+		indexByPollId[pollIds[index]] = 0;
+		System.arraycopy(pollIds, index + 1, pollIds, index, count - index - 1);
+		for (int i = index; i < count - 1; i++) {
+			indexByPollId[pollIds[i]] = i + 1;
+		}
+	}
+	
+	/**
+	 * Grows the poll array so it can hold at least the given number
+	 * of polls.
+	 * 
+	 * @param capacity The number of polls the array should hold.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > polls.length) {
+			polls = Arrays.copyOf(polls, Math.max(capacity, 1));
+		}
+	}
+	
+	/**
+	 * Gets the data of a specified party and returns
+	 * the average of the data from all the polls it is in.
+	 * 
+	 * Precondition: none
+	 * Postcondition: A <code>Party</code> object with the average data of a
+	 * given party, if it exists in the poll list is returned, 
+	 * else, a null <code>Party</code> is returned.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the data average of a specified party.
+	 */
+	public Party getAveragePartyData(String name) {
+		return read(() -> averagePartyData(name));
+	}
+	
+	/**
+	 * Gets the average data of a specified party, for the methods
+	 * that already read under the lock.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the data average of a specified party.
+	 */
+	private Party averagePartyData(String name) {
+		if (matrix != null) {
+			return matrixAveragePartyData(name);
+		}
+		
+		// Polls that are not tracked can change without notice,
+		// so their data has to be read again.
+		if (untrackedPolls > 0) {
+			if (parallelAggregator != null) {
+				return parallelAggregator.getAveragePartyData(this, name);
+			}
+			return scanAveragePartyData(name);
+		}
+		
+		Party avgParty = new Party(name);
+		int id = PartyRegistry.getInstance().idOf(name);
+		PartyTotals totals = id >= 0 && id < partyTotals.length ? partyTotals[id] : null;
+		
+		// Sets the seats and votes in avgParty to be the average
+		// seats and votes of a given party.
+		if (totals != null && totals.occurrences != 0) {
+			avgParty.setProjectedNumberOfSeats((float)(totals.seats / totals.occurrences));
+			avgParty.setProjectedPercentageOfVotes((float)(totals.votes / totals.occurrences));
+			avgParty.setColour(partyColour(id));
+		}
+		
+		return avgParty;
+	}
+	
+	/**
+	 * Reads the average data of a specified party from the
+	 * column totals of the column store.
+	 * 
+	 * Precondition: This is a columnar poll list.
+	 * Postcondition: A <code>Party</code> object with the average data of a
+	 * given party is returned.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the data average of a specified party.
+	 */
+	private Party matrixAveragePartyData(String name) {
+		Party avgParty = new Party(name);
+		int column = matrix.column(PartyRegistry.getInstance().idOf(name));
+		
+		if (column >= 0 && matrix.getOccurrences(column) != 0) {
+			avgParty.setProjectedNumberOfSeats((float)(matrix.getSeatTotal(column) / matrix.getOccurrences(column)));
+			avgParty.setProjectedPercentageOfVotes((float)(matrix.getVoteTotal(column) / matrix.getOccurrences(column)));
+			avgParty.setColour(partyColour(PartyRegistry.getInstance().idOf(name)));
+		}
+		
+		return avgParty;
+	}
+	
+	/**
+	 * Computes the average data of a specified party by reading
+	 * every poll in the list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: A <code>Party</code> object with the average data of a
+	 * given party is returned.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the data average of a specified party.
+	 */
+	private Party scanAveragePartyData(String name) {
+		Party avgParty = new Party(name);
+		Party tempParty = new Party(name);
+		int id = PartyRegistry.getInstance().idOf(name);
+		// The sums are exact, so they match the sums of a parallel aggregator.
+		ExactSum avgSeats = new ExactSum();
+		ExactSum avgVotes = new ExactSum();
+		int partyOccurance = 0;
+
+		// Adds up the number of seats and votes for a given party from
+		// the polls only if it is in the poll.
+		for (int i = 0; i < size; i++) {
+			tempParty = polls[i].getParty(id);
+			if (tempParty != null) {
+				avgSeats.add(tempParty.getProjectedNumberOfSeats());
+				avgVotes.add(tempParty.getProjectedPercentageOfVotes());
+				partyOccurance++;
+			}	
+		}
+
+		// Sets the seats and votes in avgParty to be the average
+		// seats and votes of a given party.
+		if (partyOccurance != 0) {
+			avgParty.setProjectedNumberOfSeats((float)(avgSeats.doubleValue() / partyOccurance));
+			avgParty.setProjectedPercentageOfVotes((float)(avgVotes.doubleValue() / partyOccurance));
+			avgParty.setColour(partyColour(id));
+		}
+		
+		return avgParty;
+	}
+	
+	/**
+	 * Finds the colour to use for a party in the aggregate, which is
+	 * its colour in the first poll, or the colour it was registered
+	 * with if the first poll does not have it.  Columnar poll lists
+	 * use the colour of the party's column.
+	 * 
+	 * @param partyId The id of the party.
+	 * @return The colour of the party.
+	 */
+	Color partyColour(int partyId) {
+		if (matrix != null && matrix.column(partyId) >= 0) {
+			return matrix.getPartyColour(matrix.column(partyId));
+		}
+		Party first = size > 0 ? polls[0].getParty(partyId) : null;
+		if (first != null) {
+			return first.getPartyColour();
+		}
+		return partyId >= 0 ? PartyRegistry.getInstance().getColour(partyId) : null;
+	}
+	
+	/**
+	 * Adds the data of one party to the running totals.  Called by the
+	 * tracked polls whenever a party is added, replaced, renamed or changes
+	 * its projections, so the totals never need to be recomputed.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The totals of the named party are adjusted.
+	 * 
+	 * @param poll The poll the party is in.
+	 * @param partyId The id of the party.
+	 * @param seats The change in projected seats.
+	 * @param votes The change in projected percentage of votes.
+	 * @param occurrences The change in the number of polls the party is in.
+	 */
+	void trackParty(Poll poll, int partyId, double seats, double votes, int occurrences) {
+		trackTotals(poll, partyId, seats, votes, occurrences);
+		if (rolling != null) {
+			rolling.refresh(poll);
+		}
+	}
+	
+	/**
+	 * Adds the data of one party to the running totals, like
+	 * <code>trackParty</code>, but leaves the rolling aggregate alone.
+	 * Used when a whole poll is claimed or released, since the list adds
+	 * the poll to, or takes it out of, the rolling window itself.
+	 * 
+	 * @param poll The poll the party is in.
+	 * @param partyId The id of the party.
+	 * @param seats The change in projected seats.
+	 * @param votes The change in projected percentage of votes.
+	 * @param occurrences The change in the number of polls the party is in.
+	 */
+	void trackTotals(Poll poll, int partyId, double seats, double votes, int occurrences) {
+		if (partyId < 0) {
+			return;
+		}
+		if (weighting != null) {
+			trackWeightedParty(poll, partyId, seats, votes, occurrences);
+		}
+		PartyTotals totals = totals(partyId);
+		totals.seats += seats;
+		totals.votes += votes;
+		totals.occurrences += occurrences;
+	}
+	
+	/**
+	 * Adds the data of one party, multiplied by the weight of its poll,
+	 * to the weighted running totals.
+	 * 
+	 * @param poll The poll the party is in.
+	 * @param partyId The id of the party.
+	 * @param seats The change in projected seats.
+	 * @param votes The change in projected percentage of votes.
+	 * @param occurrences The change in the number of polls the party is in.
+	 */
+	void trackWeightedParty(Poll poll, int partyId, double seats, double votes, int occurrences) {
+		if (partyId < 0) {
+			return;
+		}
+		// Moves the anchor forward when a poll is so much newer than
+		// the anchor that its weight would grow out of range.
+		long day = poll.getFieldDate().toEpochDay();
+		if (day - anchorDay > weighting.rebaseDistance()) {
+			rebase(day);
+		}
+		double weight = weighting.weight(poll, anchorDay);
+		PartyTotals totals = totals(partyId);
+		totals.weightedSeats += weight * seats;
+		totals.weightedVotes += weight * votes;
+		totals.weight += weight * occurrences;
+	}
+	
+	/**
+	 * Adds or takes out the weighted data of all parties of a poll.
+	 * Called by a tracked poll before and after a change to its weight.
+	 * 
+	 * @param poll The poll whose weight changes.
+	 * @param sign 1 to add the weighted data, -1 to take it out.
+	 */
+	void trackWeight(Poll poll, int sign) {
+		if (weighting != null) {
+			poll.forEachTrackedParty(sign);
+		}
+	}
+	
+	/**
+	 * Moves the date the poll weights are relative to.  Since moving the
+	 * date multiplies every weight by the same factor, only the weighted
+	 * totals are scaled and no poll has to be read.
+	 * 
+	 * @param day The new anchor date, as a day count since the epoch.
+	 */
+	private void rebase(long day) {
+		double factor = Math.pow(2, (anchorDay - day) / weighting.getHalfLifeDays());
+		for (PartyTotals totals : partyTotals) {
+			if (totals != null) {
+				totals.weightedSeats *= factor;
+				totals.weightedVotes *= factor;
+				totals.weight *= factor;
+			}
+		}
+		anchorDay = day;
+	}
+	
+	/**
+	 * Gets the running totals of a party, creating them if needed.
+	 * 
+	 * @param partyId The id of the party.
+	 * @return The running totals of the party.
+	 */
+	private PartyTotals totals(int partyId) {
+		// Grows the totals when parties were registered since the last update.
+		if (partyId >= partyTotals.length) {
+			PartyTotals[] grown = new PartyTotals[Math.max(partyId + 1, PartyRegistry.getInstance().size())];
+			System.arraycopy(partyTotals, 0, grown, 0, partyTotals.length);
+			partyTotals = grown;
+		}
+		PartyTotals totals = partyTotals[partyId];
+		if (totals == null) {
+			totals = new PartyTotals();
+			partyTotals[partyId] = totals;
+		}
+		return totals;
+	}
+	
+	/**
+	 * Called by a tracked poll that has to stop being tracked, after it
+	 * removed its data from the running totals.
+	 */
+	void pollUntracked() {
+		untrackedPolls++;
+	}
+	
+	/**
+	 * Turns on the weighted aggregate, in which polls count according to
+	 * their sample size, the rating of their pollster and their age.  The
+	 * weighted totals are computed once here and kept up to date from then
+	 * on, like the unweighted totals.  Weighting is not available for
+	 * columnar poll lists, which don't store details about their polls.
+	 * 
+	 * Precondition: none
+	 * Postcondition: <code>weighting</code> is set and the weighted
+	 * totals are computed.
+	 * 
+	 * @param aWeighting How to weigh the polls, or null to stop keeping
+	 * the weighted totals.
+	 */
+	public void setWeighting(PollWeighting aWeighting) {
+		long stamp = lockForWriting();
+		try {
+			weigh(aWeighting);
+		} finally {
+			unlockForWriting(stamp);
+		}
+	}
+	
+	/**
+	 * Sets the weighting and computes the weighted totals, for
+	 * <code>setWeighting</code> once it holds the write lock.
+	 * 
+	 * @param aWeighting How to weigh the polls, or null to stop keeping
+	 * the weighted totals.
+	 */
+	private void weigh(PollWeighting aWeighting) {
+		if (aWeighting != null && matrix != null) {
+			System.out.println("ERROR: A columnar poll list can't be weighted. The list will be left unchanged.");
+			return;
+		}
+		
+		// Clears the weighted totals and adds every tracked poll again.
+		weighting = aWeighting;
+		anchorDay = LocalDate.now().toEpochDay();
+		for (PartyTotals totals : partyTotals) {
+			if (totals != null) {
+				totals.weightedSeats = 0;
+				totals.weightedVotes = 0;
+				totals.weight = 0;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (polls[i].isTrackedBy(this)) {
+				trackWeight(polls[i], 1);
+			}
+		}
+	}
+	
+	/**
+	 * A getter for <code>weighting</code>.
+	 * 
+	 * @return How polls are weighted, or null if the weighted aggregate is off.
+	 */
+	public PollWeighting getWeighting() {
+		return weighting;
+	}
+	
+	/**
+	 * Gets the weighted average of the data of a specified party,
+	 * where each poll counts as much as its weight.
+	 * 
+	 * Precondition: The weighted aggregate was turned on with <code>setWeighting</code>.
+	 * Postcondition: A <code>Party</code> object with the weighted average data of a
+	 * given party is returned. If the weighted aggregate is off, an error message is
+	 * printed and the unweighted average is returned.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the weighted average of a specified party.
+	 */
+	public Party getWeightedAveragePartyData(String name) {
+		return read(() -> weightedAveragePartyData(name));
+	}
+	
+	/**
+	 * Gets the weighted average data of a specified party, for the
+	 * methods that already read under the lock.
+	 * 
+	 * @param name The name of a party whose data will be averaged.
+	 * @return An instance of Party that contains the weighted average of a specified party.
+	 */
+	private Party weightedAveragePartyData(String name) {
+		if (weighting == null) {
+			System.out.println("ERROR: The weighted aggregate is off, the unweighted average is used instead.");
+			return averagePartyData(name);
+		}
+		
+		Party avgParty = new Party(name);
+		int id = PartyRegistry.getInstance().idOf(name);
+		double weightedSeats = 0;
+		double weightedVotes = 0;
+		double weight = 0;
+		
+		if (untrackedPolls > 0) {
+			// Untracked polls can change without notice, so they are all read again.
+			for (int i = 0; i < size; i++) {
+				Party party = polls[i].getParty(id);
+				if (party != null) {
+					double pollWeight = weighting.weight(polls[i], anchorDay);
+					weightedSeats += pollWeight * party.getProjectedNumberOfSeats();
+					weightedVotes += pollWeight * party.getProjectedPercentageOfVotes();
+					weight += pollWeight;
+				}
+			}
+		} else if (id >= 0 && id < partyTotals.length && partyTotals[id] != null) {
+			weightedSeats = partyTotals[id].weightedSeats;
+			weightedVotes = partyTotals[id].weightedVotes;
+			weight = partyTotals[id].weight;
+		}
+		
+		if (weight > 0) {
+			// Clamps the averages, which can be off by a rounding error.
+			avgParty.setProjectedNumberOfSeats((float)Math.max(0, weightedSeats / weight));
+			avgParty.setProjectedPercentageOfVotes((float)Math.min(1, Math.max(0, weightedVotes / weight)));
+			avgParty.setColour(partyColour(id));
+		}
+		
+		return avgParty;
+	}
+	
+	/**
+	 * Gets the weighted aggregate of all polls for the parties in the
+	 * <code>names</code> list.
+	 * 
+	 * Precondition: The weighted aggregate was turned on with <code>setWeighting</code>.
+	 * Postcondition: Returns a poll representing the weighted
+	 * aggregate of all polls in the list.
+	 * 
+	 * @param names An String array of the party names.
+	 * @return A poll that represents that weighted aggregate data.
+	 */
+	public Poll getWeightedAggregatePoll(String[] names) {
+		return read(() -> {
+			Poll aggregate = new Poll("Weighted Aggregate", names.length);
+			
+			// Adds the weighted average data of a party in names to aggregate.
+			for (int i = 0; i < names.length; i++) {
+				aggregate.addParty(weightedAveragePartyData(names[i]));
+			}
+			
+			return aggregate;
+		});
+	}
+	
+	/**
+	 * Sets the size of the rolling aggregate, which averages only the
+	 * most recent polls.  It is kept in a ring buffer that takes in each
+	 * new poll and retires the oldest one, so it never reads the older
+	 * polls again.  Removing a poll refills the window from the last
+	 * polls.  A new list has a window of <code>DEFAULT_ROLLING_WINDOW</code>.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The rolling aggregate is filled with the last
+	 * <code>windowSize</code> polls of the list.
+	 * 
+	 * @param windowSize The number of most recent polls to average,
+	 * or 0 to turn the rolling aggregate off.
+	 */
+	public void setRollingWindow(int windowSize) {
+		long stamp = lockForWriting();
+		try {
+			fillRollingWindow(windowSize);
+		} finally {
+			unlockForWriting(stamp);
+		}
+	}
+	
+	/**
+	 * Creates the rolling aggregate and fills it with the last polls,
+	 * for the methods that already hold the write lock.
+	 * 
+	 * @param windowSize The number of most recent polls to average,
+	 * or 0 to turn the rolling aggregate off.
+	 */
+	private void fillRollingWindow(int windowSize) {
+		if (windowSize < 1) {
+			rolling = null;
+			return;
+		}
+		rolling = new RollingAggregate(windowSize);
+		// Columnar lists read the last rows directly instead.
+		if (matrix == null) {
+			for (int i = Math.max(0, size - windowSize); i < size; i++) {
+				rolling.add(polls[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of most recent polls in the rolling aggregate.
+	 * 
+	 * @return The size of the rolling window, or 0 if it is off.
+	 */
+	public int getRollingWindow() {
+		return rolling == null ? 0 : rolling.getWindowSize();
+	}
+	
+	/**
+	 * Gets the aggregate of the most recent polls for the parties in
+	 * the <code>names</code> list.
+	 * 
+	 * Precondition: The rolling aggregate was not turned off with <code>setRollingWindow</code>.
+	 * Postcondition: Returns a poll representing the aggregate of the
+	 * last polls in the list. If the rolling aggregate is off, an error
+	 * message is printed and the aggregate of all polls is returned.
+	 * 
+	 * @param names An String array of the party names.
+	 * @return A poll that represents the aggregate of the most recent polls.
+	 */
+	public Poll getRollingAggregatePoll(String[] names) {
+		if (rolling == null) {
+			System.out.println("ERROR: The rolling aggregate is off, the aggregate of all polls is used instead.");
+			return getAggregatePoll(names);
+		}
+		
+		RollingAggregate window = rolling;
+		if (matrix != null) {
+			// The last rows of the column store are cheap to read.
+			return read(() -> {
+				RollingAggregate lastRows = new RollingAggregate(window.getWindowSize());
+				for (int row = Math.max(0, matrix.getRows() - window.getWindowSize()); row < matrix.getRows(); row++) {
+					lastRows.add(matrix.getPoll(row));
+				}
+				return lastRows.getAggregatePoll(names);
+			});
+		}
+		
+		// Untracked polls don't report their changes, so the window is read
+		// again, which changes it and so needs the write lock.
+		if (untrackedPolls > 0) {
+			long stamp = lockForWriting();
+			try {
+				window.refreshAll();
+				return window.getAggregatePoll(names);
+			} finally {
+				unlockForWriting(stamp);
+			}
+		}
+		return read(() -> window.getAggregatePoll(names));
+	}
+	
+	/**
+	 * Gets the aggregate of all polls in the <code>names</code> list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: Returns a poll representing the
+	 * aggregate of all polls in the list.
+	 * 
+	 * @param names An String array of the party names.
+	 * @return A poll that represents that aggregate data.
+	 */
+	public Poll getAggregatePoll(String[] names) {
+		return read(() -> {
+			// Reads all parties in one pass over the polls when the
+			// running totals can't be used.
+			if (untrackedPolls > 0 && parallelAggregator != null) {
+				return parallelAggregator.getAggregatePoll(this, names);
+			}
+			
+			Poll aggregate = new Poll("Aggregate", names.length);
+			
+			// Adds the average data of a party in names to aggregate.
+			for (int i = 0; i < names.length; i++) {
+				aggregate.addParty(averagePartyData(names[i]));
+			}
+			
+			return aggregate;
+		});
+	}
+	
+	/**
+	 * Returns the text visualization of the parties' 
+	 * seats in the poll list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: Return a string that visualizes
+	 * the parties' seats.
+	 * 
+	 * @return A string that visualizes the parties' seats in the poll list.
+	 */
+	public String textVisualizationBySeats() {
+		StringBuilder seatVisual = new StringBuilder();
+		try {
+			textVisualizationBySeats(seatVisual);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return seatVisual.toString();
+	}
+	
+	/**
+	 * Writes the text visualization of the parties'
+	 * seats in the poll list to an Appendable.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The visualization is written to out
+	 * one poll at a time, so a whole poll list can be sent
+	 * to a file or the console without building it in memory.
+	 * 
+	 * @param out where to write the visualization.
+	 * @throws IOException if writing to out fails.
+	 */
+	public void textVisualizationBySeats(Appendable out) throws IOException {
+		double numSeatsPerStar = Math.ceil((float)numOfSeats / MAX_STARS_FOR_VISUALIZATION);
+		
+		// Writes the text visualization by seats
+		// of the polls in the poll list, each followed by a blank line.
+		// In concurrent mode each poll is copied, so it can't change while it is written.
+		Poll aPoll;
+		for (int i = 0; (aPoll = pollForReading(i)) != null; i++) {
+			aPoll.textVisualizationBySeats(out, MAX_STARS_FOR_VISUALIZATION, numSeatsPerStar);
+			out.append('\n');
+		}
+	}
+	
+	/**
+	 * Returns the text visualization of the parties'
+	 * votes in the poll list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: Return a string that visualizes
+	 * the parties' votes.
+	 * 
+	 * @return A string that visualizes the parties' votes in the poll list.
+	 */
+	public String textVisualizationByVotes() {
+		StringBuilder voteVisual = new StringBuilder();
+		try {
+			textVisualizationByVotes(voteVisual);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return voteVisual.toString();
+	}
+	
+	/**
+	 * Writes the text visualization of the parties'
+	 * votes in the poll list to an Appendable.
+	 * 
+	 * Precondition: none
+	 * Postcondition: The visualization is written to out
+	 * one poll at a time, so a whole poll list can be sent
+	 * to a file or the console without building it in memory.
+	 * 
+	 * @param out where to write the visualization.
+	 * @throws IOException if writing to out fails.
+	 */
+	public void textVisualizationByVotes(Appendable out) throws IOException {
+		double percentVotePerStar = Math.ceil(100.0 / MAX_STARS_FOR_VISUALIZATION);
+		
+		// Writes the text visualization by votes
+		// of the polls in the poll list, each followed by a blank line.
+		// In concurrent mode each poll is copied, so it can't change while it is written.
+		Poll aPoll;
+		for (int i = 0; (aPoll = pollForReading(i)) != null; i++) {
+			aPoll.textVisualizationByVotes(out, MAX_STARS_FOR_VISUALIZATION, percentVotePerStar);
+			out.append('\n');
+		}
+	}
+	
+	/**
+	 * Returns the string representation of the seats in the poll list.
+	 * 
+	 * Precondition: none
+	 * Postcondition: Returns a formatted string of the number of seats 
+	 * in the poll list.
+	 * 
+	 * @return A string that contains the total seats in the poll list and the number of seats held by a given party
+	 */
+	public String toString() {
+		return "Number of seats: " + numOfSeats + "\n" + textVisualizationBySeats();
+	}
+	
+	/**
+	 * Running sums of the data of one party over the tracked polls.  Sums are kept
+	 * as doubles, so the rounding of every addition and subtraction is far below
+	 * the float precision of the values.  Rounding errors do add up over very many
+	 * changes, and averages read from the sums can differ in the last bits from a
+	 * fresh sum over the polls.
+	 */
+	private static class PartyTotals {
+		private double seats;
+		private double votes;
+		private int occurrences;
+		
+		// Sums of the data times the weight of its poll, and of the weights.
+		private double weightedSeats;
+		private double weightedVotes;
+		private double weight;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package model;
+
+/**
+ * A change made to a poll list, as told to the <code>PollListListener</code>s of the
+ * list.  An event only says what changed, not the new values, so a listener reads the
+ * values it needs from the list and skips the changes it does not care about.
+ * <p>
+ * Polls are named by their id in the list and parties by their id in the
+ * <code>PartyRegistry</code>, so an event stays meaningful after the poll moved.
+ *
+ * @author Joshua Lee
+ */
+public final class PollListEvent {
+	/**
+	 * The kinds of changes.
+	 */
+	public enum Type {
+		/** a poll was added to the list */
+		POLL_ADDED,
+		/** a poll was removed from the list */
+		POLL_REMOVED,
+		/** a poll was renamed */
+		POLL_RENAMED,
+		/** a party was added to a poll, or replaced a party with the same name */
+		PARTY_ADDED,
+		/** a party was taken out of a poll, which happens when it is renamed */
+		PARTY_REMOVED,
+		/** the projected seats or votes of a party in a poll changed */
+		PARTY_CHANGED
+	}
+
+	private final Type type;
+	private final int pollId;
+	private final int partyId;
+
+	PollListEvent(Type type, int pollId, int partyId) {
+		this.type = type;
+		this.pollId = pollId;
+		this.partyId = partyId;
+	}
+
+	/**
+	 * @return the kind of change.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the id of the poll that changed.
+	 */
+	public int getPollId() {
+		return pollId;
+	}
+
+	/**
+	 * @return the id of the party that changed, or -1 if the change is about the poll itself.
+	 */
+	public int getPartyId() {
+		return partyId;
+	}
+
+	/**
+	 * @return true if the change is about a party rather than the poll itself.
+	 */
+	public boolean isPartyEvent() {
+		return partyId >= 0;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof PollListEvent)) {
+			return false;
+		}
+		PollListEvent event = (PollListEvent) other;
+		return type == event.type && pollId == event.pollId && partyId == event.partyId;
+	}
+
+	@Override
+	public int hashCode() {
+		return (type.ordinal() * 31 + pollId) * 31 + partyId;
+	}
+
+	@Override
+	public String toString() {
+		return type + " poll " + pollId + (partyId >= 0 ? " party " + PartyRegistry.getInstance().getName(partyId) : "");
+	}
+}
@@ -0,0 +1,655 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Exports poll lists to JSON and imports them from it, one poll at a time.
+ * <p>
+ * Writing goes to an <code>Appendable</code> poll by poll, and reading pulls one
+ * token at a time from a <code>Reader</code> through a fixed buffer, so neither ever
+ * holds more than one poll of the document.  A poll list of a million polls can be
+ * exported to a file or a socket without building the document in memory, and
+ * <code>forEachPoll</code> can go over a document without building a poll list.
+ * <p>
+ * A document looks like this, with one poll per line:
+ * <pre>
+ * {"numOfSeats":338,"nextPollId":2,"columns":[{"name":"Red","colour":[1.0,0.0,0.0,1.0]}],"polls":[
+ * {"id":0,"name":"Poll A","sampleSize":1200,"pollsterRating":1.0,"fieldDate":"2024-05-01","parties":[
+ * {"name":"Red","colour":[1.0,0.0,0.0,1.0],"seats":120.0,"votes":0.31}]},
+ * {"id":1,"name":"Poll B",...}
+ * ]}
+ * </pre>
+ * <code>columns</code> is only written for a columnar poll list, and a colour is
+ * <code>null</code> if none is set.  Fields the reader does not know are skipped, and
+ * only <code>numOfSeats</code> and, within a poll, <code>name</code> are required.
+ * Everything that a poll list needs before its polls has to come before
+ * <code>polls</code>, which the writer always does.
+ *
+ * @author Joshua Lee
+ */
+public class PollListJson {
+	private PollListJson() {
+	}
+
+	/**
+	 * Exports a poll list to a UTF-8 file, replacing the file if it exists.
+	 *
+	 * @param list the poll list to export.
+	 * @param file the file to write to.
+	 * @throws IOException if the file can't be written.
+	 */
+	public static void save(PollList list, Path file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			write(list, out);
+		}
+	}
+
+	/**
+	 * Imports a poll list from a UTF-8 file.
+	 *
+	 * @param file the file to read from.
+	 * @return the poll list.
+	 * @throws IOException if the file can't be read or is not a valid document.
+	 */
+	public static PollList load(Path file) throws IOException {
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * Writes a poll list as JSON, one poll at a time.
+	 *
+	 * @param list the poll list to write.
+	 * @param out where to write the document.  It is not closed.
+	 * @throws IOException if writing to out fails.
+	 */
+	public static void write(PollList list, Appendable out) throws IOException {
+		out.append("{\"numOfSeats\":").append(String.valueOf(list.getNumOfSeats()))
+			.append(",\"nextPollId\":").append(String.valueOf(list.getNextPollId()));
+		PollMatrix matrix = list.getMatrix();
+		if (matrix != null) {
+			out.append(",\"columns\":[");
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				if (column > 0) {
+					out.append(',');
+				}
+				out.append("{\"name\":");
+				writeString(matrix.getPartyName(column), out);
+				out.append(",\"colour\":");
+				writeColour(matrix.getPartyColour(column), out);
+				out.append('}');
+			}
+			out.append(']');
+		}
+		out.append(",\"polls\":[");
+		// in concurrent mode each poll is copied, so it can't change while it is written
+		Poll aPoll;
+		for (int index = 0; (aPoll = list.pollForReading(index)) != null; index++) {
+			out.append(index > 0 ? ",\n" : "\n");
+			writePoll(aPoll, list.getPollId(index), out);
+		}
+		out.append("\n]}\n");
+	}
+
+	/**
+	 * Writes one poll as a JSON object.
+	 *
+	 * @param aPoll the poll to write.
+	 * @param pollId the id of the poll, or -1 to leave it out.
+	 * @param out where to write the object.
+	 * @throws IOException if writing to out fails.
+	 */
+	public static void writePoll(Poll aPoll, int pollId, Appendable out) throws IOException {
+		out.append('{');
+		if (pollId >= 0) {
+			out.append("\"id\":").append(String.valueOf(pollId)).append(',');
+		}
+		out.append("\"name\":");
+		writeString(aPoll.getPollName(), out);
+		out.append(",\"sampleSize\":").append(String.valueOf(aPoll.getSampleSize()))
+			.append(",\"pollsterRating\":").append(String.valueOf(aPoll.getPollsterRating()))
+			.append(",\"fieldDate\":\"").append(aPoll.getFieldDate().toString())
+			.append("\",\"parties\":[");
+		boolean first = true;
+		for (Party aParty : aPoll.getParties()) {
+			if (aParty == null) {
+				continue;
+			}
+			out.append(first ? "{\"name\":" : ",{\"name\":");
+			first = false;
+			writeString(aParty.getName(), out);
+			out.append(",\"colour\":");
+			writeColour(aParty.getPartyColour(), out);
+			out.append(",\"seats\":").append(String.valueOf(aParty.getProjectedNumberOfSeats()))
+				.append(",\"votes\":").append(String.valueOf(aParty.getProjectedPercentageOfVotes()))
+				.append('}');
+		}
+		out.append("]}");
+	}
+
+	/**
+	 * Reads a poll list from JSON, one poll at a time.
+	 *
+	 * @param in the document.  It is not closed.
+	 * @return the poll list.
+	 * @throws IOException if reading fails or the document is not valid.
+	 */
+	public static PollList read(Reader in) throws IOException {
+		ListBuilder builder = new ListBuilder();
+		parse(new Parser(in), builder);
+		return builder.finish();
+	}
+
+	/**
+	 * Reads the polls of a document one at a time and hands each to a consumer,
+	 * without building a poll list.  Polls are not added to any list, so the
+	 * consumer can keep them or let them go.
+	 *
+	 * @param in the document.  It is not closed.
+	 * @param consumer called with each poll, in document order.
+	 * @return the number of polls read.
+	 * @throws IOException if reading fails or the document is not valid.
+	 */
+	public static int forEachPoll(Reader in, Consumer<Poll> consumer) throws IOException {
+		int[] count = new int[1];
+		parse(new Parser(in), new Handler() {
+			@Override
+			void poll(Poll aPoll, int pollId) {
+				consumer.accept(aPoll);
+				count[0]++;
+			}
+		});
+		return count[0];
+	}
+
+	private static void writeString(String value, Appendable out) throws IOException {
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\') {
+				continue;
+			}
+			// writes the run of plain characters before c in one call
+			out.append(value, start, i);
+			start = i + 1;
+			switch (c) {
+			case '"': out.append("\\\""); break;
+			case '\\': out.append("\\\\"); break;
+			case '\n': out.append("\\n"); break;
+			case '\r': out.append("\\r"); break;
+			case '\t': out.append("\\t"); break;
+			default: out.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		out.append(value, start, value.length()).append('"');
+	}
+
+	private static void writeColour(Color colour, Appendable out) throws IOException {
+		if (colour == null) {
+			out.append("null");
+			return;
+		}
+		out.append('[').append(String.valueOf(colour.getRed()))
+			.append(',').append(String.valueOf(colour.getGreen()))
+			.append(',').append(String.valueOf(colour.getBlue()))
+			.append(',').append(String.valueOf(colour.getOpacity())).append(']');
+	}
+
+	/**
+	 * Reads a document, telling the handler about the settings and each poll.
+	 */
+	private static void parse(Parser parser, Handler handler) throws IOException {
+		int numOfSeats = -1;
+		int nextPollId = 0;
+		List<String> columnNames = null;
+		List<Color> columnColours = null;
+		boolean hasPolls = false;
+
+		parser.expect('{');
+		for (boolean first = true; parser.hasNext('}', first); first = false) {
+			String key = parser.nextKey();
+			switch (key) {
+			case "numOfSeats":
+				numOfSeats = parser.nextInt();
+				break;
+			case "nextPollId":
+				nextPollId = parser.nextInt();
+				break;
+			case "columns":
+				columnNames = new ArrayList<>();
+				columnColours = new ArrayList<>();
+				parser.expect('[');
+				for (boolean firstColumn = true; parser.hasNext(']', firstColumn); firstColumn = false) {
+					String name = null;
+					Color colour = null;
+					parser.expect('{');
+					for (boolean firstField = true; parser.hasNext('}', firstField); firstField = false) {
+						String field = parser.nextKey();
+						if (field.equals("name")) {
+							name = parser.nextString();
+						} else if (field.equals("colour")) {
+							colour = readColour(parser);
+						} else {
+							parser.skipValue();
+						}
+					}
+					if (name == null) {
+						throw parser.error("A column has no name");
+					}
+					columnNames.add(name);
+					columnColours.add(colour);
+				}
+				break;
+			case "polls":
+				if (numOfSeats < 0) {
+					throw parser.error("\"numOfSeats\" has to come before \"polls\"");
+				}
+				handler.begin(numOfSeats, columnNames, columnColours);
+				hasPolls = true;
+				parser.expect('[');
+				for (boolean firstPoll = true; parser.hasNext(']', firstPoll); firstPoll = false) {
+					readPoll(parser, handler);
+				}
+				break;
+			default:
+				parser.skipValue();
+			}
+		}
+		if (numOfSeats < 0) {
+			throw parser.error("The document has no \"numOfSeats\"");
+		}
+		if (!hasPolls) {
+			handler.begin(numOfSeats, columnNames, columnColours);
+		}
+		handler.end(nextPollId);
+	}
+
+	private static void readPoll(Parser parser, Handler handler) throws IOException {
+		int pollId = -1;
+		String name = null;
+		int sampleSize = 0;
+		double pollsterRating = 1.0;
+		LocalDate fieldDate = null;
+		List<Party> parties = new ArrayList<>();
+
+		parser.expect('{');
+		for (boolean first = true; parser.hasNext('}', first); first = false) {
+			String key = parser.nextKey();
+			switch (key) {
+			case "id": pollId = parser.nextInt(); break;
+			case "name": name = parser.nextString(); break;
+			case "sampleSize": sampleSize = parser.nextInt(); break;
+			case "pollsterRating": pollsterRating = parser.nextDouble(); break;
+			case "fieldDate":
+				String date = parser.nextString();
+				try {
+					fieldDate = date == null ? null : LocalDate.parse(date);
+				} catch (DateTimeParseException e) {
+					throw parser.error("\"" + date + "\" is not a yyyy-mm-dd date");
+				}
+				break;
+			case "parties":
+				parser.expect('[');
+				for (boolean firstParty = true; parser.hasNext(']', firstParty); firstParty = false) {
+					parties.add(readParty(parser));
+				}
+				break;
+			default:
+				parser.skipValue();
+			}
+		}
+		if (name == null) {
+			throw parser.error("A poll has no name");
+		}
+
+		Poll aPoll = new Poll(name, parties.size());
+		aPoll.setSampleSize(sampleSize);
+		aPoll.setPollsterRating(pollsterRating);
+		if (fieldDate != null) {
+			aPoll.setFieldDate(fieldDate);
+		}
+		for (Party aParty : parties) {
+			aPoll.addParty(aParty);
+		}
+		handler.poll(aPoll, pollId);
+	}
+
+	private static Party readParty(Parser parser) throws IOException {
+		String name = null;
+		Color colour = null;
+		float seats = 0;
+		float votes = 0;
+		parser.expect('{');
+		for (boolean first = true; parser.hasNext('}', first); first = false) {
+			String key = parser.nextKey();
+			switch (key) {
+			case "name": name = parser.nextString(); break;
+			case "colour": colour = readColour(parser); break;
+			case "seats": seats = parser.nextFloat(); break;
+			case "votes": votes = parser.nextFloat(); break;
+			default: parser.skipValue();
+			}
+		}
+		if (name == null) {
+			throw parser.error("A party has no name");
+		}
+		Party aParty = new Party(name);
+		if (colour != null) {
+			aParty.setColour(colour);
+		}
+		aParty.setProjectedNumberOfSeats(seats);
+		aParty.setProjectedPercentageOfVotes(votes);
+		return aParty;
+	}
+
+	private static Color readColour(Parser parser) throws IOException {
+		if (parser.nextNull()) {
+			return null;
+		}
+		double[] channels = new double[4];
+		parser.expect('[');
+		for (int i = 0; i < channels.length; i++) {
+			if (i > 0) {
+				parser.expect(',');
+			}
+			channels[i] = parser.nextDouble();
+			if (!(channels[i] >= 0 && channels[i] <= 1)) {
+				throw parser.error("The colour channel " + channels[i] + " is not between 0 and 1");
+			}
+		}
+		parser.expect(']');
+		return new Color(channels[0], channels[1], channels[2], channels[3]);
+	}
+
+	/**
+	 * Told about the parts of a document as they are read.
+	 */
+	private static abstract class Handler {
+		void begin(int numOfSeats, List<String> columnNames, List<Color> columnColours) {
+		}
+
+		abstract void poll(Poll aPoll, int pollId);
+
+		void end(int nextPollId) {
+		}
+	}
+
+	/**
+	 * Builds a poll list from a document.
+	 */
+	private static class ListBuilder extends Handler {
+		private PollList list;
+
+		@Override
+		void begin(int numOfSeats, List<String> columnNames, List<Color> columnColours) {
+			if (columnNames == null) {
+				list = new PollList(1, numOfSeats);
+			} else {
+				list = new PollList(1, numOfSeats, columnNames.toArray(new String[0]),
+						columnColours.toArray(new Color[0]));
+			}
+		}
+
+		@Override
+		void poll(Poll aPoll, int pollId) {
+			if (pollId >= 0) {
+				list.addPoll(aPoll, pollId);
+			} else {
+				list.addPoll(aPoll);
+			}
+		}
+
+		@Override
+		void end(int nextPollId) {
+			list.reservePollIds(nextPollId);
+		}
+
+		private PollList finish() {
+			return list;
+		}
+	}
+
+	/**
+	 * Pulls JSON tokens from a reader through a fixed buffer.
+	 */
+	private static class Parser {
+		private final Reader in;
+		private final char[] buffer = new char[8192];
+		private int position;
+		private int limit;
+		private long offset;
+		private final StringBuilder token = new StringBuilder();
+
+		private Parser(Reader in) {
+			this.in = in;
+		}
+
+		/**
+		 * Skips whitespace and returns the next character without taking it, or -1
+		 * at the end of the document.
+		 */
+		private int peek() throws IOException {
+			while (fill()) {
+				char c = buffer[position];
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+					return c;
+				}
+				position++;
+			}
+			return -1;
+		}
+
+		/**
+		 * Takes the next character, whitespace included.
+		 */
+		private char next() throws IOException {
+			if (!fill()) {
+				throw error("The document ends too early");
+			}
+			return buffer[position++];
+		}
+
+		/**
+		 * Reads more of the document once the buffer is used up.
+		 *
+		 * @return false at the end of the document.
+		 */
+		private boolean fill() throws IOException {
+			if (position < limit) {
+				return true;
+			}
+			offset += limit;
+			position = 0;
+			limit = Math.max(0, in.read(buffer, 0, buffer.length));
+			return limit > 0;
+		}
+
+		private void expect(char expected) throws IOException {
+			int c = peek();
+			if (c != expected) {
+				throw error("Expected '" + expected + "' but found " + describe(c));
+			}
+			position++;
+		}
+
+		/**
+		 * Moves to the next element of an object or array.
+		 *
+		 * @param close the character that closes the object or array.
+		 * @param first true before the first element.
+		 * @return true if there is another element, false if the object or array was closed.
+		 */
+		private boolean hasNext(char close, boolean first) throws IOException {
+			if (peek() == close) {
+				position++;
+				return false;
+			}
+			if (!first) {
+				expect(',');
+			}
+			return true;
+		}
+
+		private String nextKey() throws IOException {
+			String key = nextString();
+			if (key == null) {
+				throw error("A key can't be null");
+			}
+			expect(':');
+			return key;
+		}
+
+		private boolean nextNull() throws IOException {
+			if (peek() != 'n') {
+				return false;
+			}
+			literal("null");
+			return true;
+		}
+
+		private String nextString() throws IOException {
+			if (nextNull()) {
+				return null;
+			}
+			expect('"');
+			token.setLength(0);
+			while (true) {
+				char c = next();
+				if (c == '"') {
+					return token.toString();
+				}
+				if (c != '\\') {
+					token.append(c);
+					continue;
+				}
+				c = next();
+				switch (c) {
+				case '"': case '\\': case '/': token.append(c); break;
+				case 'b': token.append('\b'); break;
+				case 'f': token.append('\f'); break;
+				case 'n': token.append('\n'); break;
+				case 'r': token.append('\r'); break;
+				case 't': token.append('\t'); break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(next(), 16);
+						if (digit < 0) {
+							throw error("Invalid \\u escape");
+						}
+						code = code * 16 + digit;
+					}
+					token.append((char) code);
+					break;
+				default:
+					throw error("Invalid escape \\" + c);
+				}
+			}
+		}
+
+		/**
+		 * Reads a number token, to be parsed by the caller as the type it needs.
+		 */
+		private String nextNumber() throws IOException {
+			int c = peek();
+			token.setLength(0);
+			while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+				token.append((char) c);
+				position++;
+				c = fill() ? buffer[position] : -1;
+			}
+			if (token.length() == 0) {
+				throw error("Expected a number but found " + describe(c));
+			}
+			return token.toString();
+		}
+
+		private int nextInt() throws IOException {
+			String number = nextNumber();
+			try {
+				return Integer.parseInt(number);
+			} catch (NumberFormatException e) {
+				throw error(number + " is not a whole number");
+			}
+		}
+
+		private double nextDouble() throws IOException {
+			String number = nextNumber();
+			try {
+				return Double.parseDouble(number);
+			} catch (NumberFormatException e) {
+				throw error(number + " is not a number");
+			}
+		}
+
+		private float nextFloat() throws IOException {
+			String number = nextNumber();
+			try {
+				return Float.parseFloat(number);
+			} catch (NumberFormatException e) {
+				throw error(number + " is not a number");
+			}
+		}
+
+		private void literal(String word) throws IOException {
+			for (int i = 0; i < word.length(); i++) {
+				if (next() != word.charAt(i)) {
+					throw error("Expected " + word);
+				}
+			}
+		}
+
+		/**
+		 * Skips a value of any type, however deeply it is nested.
+		 */
+		private void skipValue() throws IOException {
+			int c = peek();
+			switch (c) {
+			case '{':
+				position++;
+				for (boolean first = true; hasNext('}', first); first = false) {
+					nextKey();
+					skipValue();
+				}
+				break;
+			case '[':
+				position++;
+				for (boolean first = true; hasNext(']', first); first = false) {
+					skipValue();
+				}
+				break;
+			case '"': nextString(); break;
+			case 'n': literal("null"); break;
+			case 't': literal("true"); break;
+			case 'f': literal("false"); break;
+			default: nextNumber();
+			}
+		}
+
+		private IOException error(String message) {
+			return new IOException(message + " at character " + (offset + position) + " of the JSON document.");
+		}
+
+		private static String describe(int c) {
+			return c < 0 ? "the end of the document" : "'" + (char) c + "'";
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Listens to the changes made to a poll list.  Registered with
+ * <code>PollList.addListener</code>.
+ * <p>
+ * Listeners are called on the thread that made the change, after the list is
+ * consistent again and without any lock of the list held, so they can read the list.
+ * They should return quickly, and hand longer work to another thread; a view, for
+ * example, should only note that it has to be redrawn and redraw on its own thread.
+ *
+ * @author Joshua Lee
+ */
+public interface PollListListener {
+	/**
+	 * Called after one or more changes were made to a poll list.
+	 *
+	 * @param source the poll list that changed.
+	 * @param events the changes, in the order they were made, each told once.
+	 */
+	void pollListChanged(PollList source, List<PollListEvent> events);
+}
@@ -0,0 +1,428 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Saves poll lists to, and loads them from, a compact binary snapshot.
+ * <p>
+ * A snapshot starts with a header and the settings of the list, followed by a table
+ * of the party names and a table of the colours used in the list.  Each poll then
+ * refers to its parties by their index in those tables, so a name or colour is
+ * stored once however many polls it appears in.  Poll ids are kept, so ids handed
+ * out before saving still find the same polls after loading.
+ * <p>
+ * All numbers are big endian.  The layout of version 1 is:
+ * <pre>
+ * int     magic "PLSN"
+ * int     version
+ * int     number of seats
+ * byte    1 if the list is columnar, 0 if not
+ * int     next poll id
+ * int     n, then n strings    party names
+ * int     n, then n colours    colours as four doubles: red, green, blue, opacity
+ * int     n                    number of columns, then n name indices and n colour
+ *                              indices, for a columnar list only
+ * int     n, then n polls      id, name, sample size (int), pollster rating (double),
+ *                              field date (long, days since the epoch), number of
+ *                              parties (int), then for each party: name index (int),
+ *                              colour index (int, -1 for none), seats (float),
+ *                              percentage of votes (float)
+ * </pre>
+ * Strings are stored as their length in UTF-8 bytes (int) followed by the bytes.
+ * <p>
+ * Snapshots are written and read through NIO channels with one large buffer, so
+ * saving and loading take a single pass over the polls.
+ *
+ * @author Joshua Lee
+ */
+public class PollListSnapshot {
+	/** the version written by this class */
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x504C534E;
+	private static final int BUFFER_SIZE = 1 << 20;
+	// entries allocated up front for a table of a snapshot whose size is unknown,
+	// so a corrupt count can't allocate more than the data that is really there
+	private static final int MAX_PREALLOCATED = 1 << 16;
+
+	// the fewest bytes an entry of each table takes in a snapshot
+	private static final int NAME_BYTES = 4;
+	private static final int COLOUR_BYTES = 32;
+	private static final int COLUMN_BYTES = 8;
+	private static final int POLL_BYTES = 32;
+	private static final int PARTY_BYTES = 16;
+
+	private PollListSnapshot() {
+	}
+
+	/**
+	 * Saves a poll list to a file, replacing the file if it exists.
+	 *
+	 * @param list the poll list to save.
+	 * @param file the file to save to.
+	 * @throws IOException if the file can't be written.
+	 */
+	public static void save(PollList list, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(list, channel);
+		}
+	}
+
+	/**
+	 * Loads a poll list from a file.
+	 *
+	 * @param file the file to load from.
+	 * @return the poll list.
+	 * @throws IOException if the file can't be read or is not a valid snapshot.
+	 */
+	public static PollList load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return read(channel);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of a poll list to a channel.
+	 *
+	 * @param list the poll list to write.
+	 * @param channel the channel to write to.  It is left open.
+	 * @throws IOException if writing fails.
+	 */
+	public static void write(PollList list, WritableByteChannel channel) throws IOException {
+		Poll[] polls = list.toArray();
+		PollMatrix matrix = list.getMatrix();
+
+		// collect the names and colours of the parties
+		List<String> names = new ArrayList<>();
+		HashMap<String, Integer> nameIndex = new HashMap<>();
+		List<Color> colours = new ArrayList<>();
+		HashMap<Color, Integer> colourIndex = new HashMap<>();
+		if (matrix != null) {
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				index(matrix.getPartyName(column), names, nameIndex);
+				index(matrix.getPartyColour(column), colours, colourIndex);
+			}
+		}
+		for (Poll aPoll : polls) {
+			for (Party aParty : aPoll.getParties()) {
+				if (aParty != null) {
+					index(aParty.getName(), names, nameIndex);
+					index(aParty.colour(), colours, colourIndex);
+				}
+			}
+		}
+
+		Output out = new Output(channel);
+		out.buffer(13).putInt(MAGIC).putInt(VERSION).putInt(list.getNumOfSeats()).put((byte) (matrix != null ? 1 : 0));
+		out.buffer(8).putInt(list.getNextPollId()).putInt(names.size());
+		for (String name : names) {
+			out.putString(name);
+		}
+		out.buffer(4).putInt(colours.size());
+		for (Color colour : colours) {
+			out.buffer(32).putDouble(colour.getRed()).putDouble(colour.getGreen())
+				.putDouble(colour.getBlue()).putDouble(colour.getOpacity());
+		}
+		if (matrix != null) {
+			out.buffer(4).putInt(matrix.getColumns());
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				out.buffer(8).putInt(nameIndex.get(matrix.getPartyName(column)))
+					.putInt(index(matrix.getPartyColour(column), colours, colourIndex));
+			}
+		}
+
+		out.buffer(4).putInt(polls.length);
+		for (int index = 0; index < polls.length; index++) {
+			Poll aPoll = polls[index];
+			out.buffer(4).putInt(list.getPollId(index));
+			out.putString(aPoll.getPollName());
+			Party[] parties = aPoll.getParties();
+			int numberOfParties = 0;
+			for (Party aParty : parties) {
+				if (aParty != null) numberOfParties++;
+			}
+			out.buffer(24).putInt(aPoll.getSampleSize()).putDouble(aPoll.getPollsterRating())
+				.putLong(aPoll.getFieldDate().toEpochDay()).putInt(numberOfParties);
+			for (Party aParty : parties) {
+				if (aParty != null) {
+					out.buffer(16).putInt(nameIndex.get(aParty.getName()))
+						.putInt(index(aParty.colour(), colours, colourIndex))
+						.putFloat(aParty.getProjectedNumberOfSeats())
+						.putFloat(aParty.getProjectedPercentageOfVotes());
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a poll list from a snapshot in a channel.
+	 *
+	 * @param channel the channel to read from.  It is left open.
+	 * @return the poll list.
+	 * @throws IOException if reading fails or the data is not a valid snapshot.
+	 */
+	public static PollList read(ReadableByteChannel channel) throws IOException {
+		Input in = new Input(channel);
+		if (in.buffer(4).getInt() != MAGIC) {
+			throw new IOException("Not a poll list snapshot.");
+		}
+		int version = in.buffer(4).getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported poll list snapshot version " + version + ".");
+		}
+		int numOfSeats = in.buffer(4).getInt();
+		boolean columnar = in.buffer(1).get() != 0;
+		int nextPollId = in.buffer(4).getInt();
+		if (nextPollId < 0) {
+			throw new IOException("Corrupt poll list snapshot: negative next poll id.");
+		}
+
+		// every count is checked against the bytes left before anything is allocated for it
+		int numberOfNames = in.count(NAME_BYTES);
+		List<String> nameTable = new ArrayList<>(Math.min(numberOfNames, MAX_PREALLOCATED));
+		for (int index = 0; index < numberOfNames; index++) {
+			nameTable.add(in.getString());
+		}
+		String[] names = nameTable.toArray(new String[0]);
+		int numberOfColours = in.count(COLOUR_BYTES);
+		List<Color> colourTable = new ArrayList<>(Math.min(numberOfColours, MAX_PREALLOCATED));
+		for (int index = 0; index < numberOfColours; index++) {
+			ByteBuffer buffer = in.buffer(32);
+			colourTable.add(new Color(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+		}
+		Color[] colours = colourTable.toArray(new Color[0]);
+
+		PollList list;
+		int numberOfPolls;
+		if (columnar) {
+			// a column names a party, so there can't be more columns than names
+			int numberOfColumns = in.count(COLUMN_BYTES);
+			if (numberOfColumns > names.length) {
+				throw new IOException("Corrupt poll list snapshot: " + numberOfColumns + " columns for " + names.length + " parties.");
+			}
+			String[] columnNames = new String[numberOfColumns];
+			Color[] columnColours = new Color[numberOfColumns];
+			for (int column = 0; column < numberOfColumns; column++) {
+				ByteBuffer buffer = in.buffer(8);
+				columnNames[column] = lookup(names, buffer.getInt());
+				int colour = buffer.getInt();
+				columnColours[column] = colour < 0 ? null : lookup(colours, colour);
+			}
+			numberOfPolls = in.count(POLL_BYTES);
+			list = new PollList(in.preallocation(numberOfPolls), numOfSeats, columnNames, columnColours);
+		} else {
+			numberOfPolls = in.count(POLL_BYTES);
+			list = new PollList(in.preallocation(numberOfPolls), numOfSeats);
+		}
+
+		int lastPollId = -1;
+		for (int index = 0; index < numberOfPolls; index++) {
+			// the ids were written in order, and all were given out before the next one
+			int pollId = in.buffer(4).getInt();
+			if (pollId <= lastPollId || pollId >= nextPollId) {
+				throw new IOException("Corrupt poll list snapshot: poll id " + pollId + " is out of order.");
+			}
+			lastPollId = pollId;
+			String pollName = in.getString();
+			ByteBuffer buffer = in.buffer(24);
+			int sampleSize = buffer.getInt();
+			double pollsterRating = buffer.getDouble();
+			long fieldDate = buffer.getLong();
+			int numberOfParties = buffer.getInt();
+			if (numberOfParties < 0) {
+				throw new IOException("Corrupt poll list snapshot: negative number of parties.");
+			}
+			// each party of a poll has its own name, and takes up bytes of its own
+			if (numberOfParties > names.length || (long) numberOfParties * PARTY_BYTES > in.remaining()) {
+				throw new IOException("Corrupt poll list snapshot: poll " + pollId + " can't have " + numberOfParties + " parties.");
+			}
+
+			Poll aPoll = new Poll(pollName, Math.max(1, numberOfParties));
+			aPoll.setSampleSize(sampleSize);
+			aPoll.setPollsterRating(pollsterRating);
+			try {
+				aPoll.setFieldDate(LocalDate.ofEpochDay(fieldDate));
+			} catch (DateTimeException e) {
+				throw new IOException("Corrupt poll list snapshot: poll " + pollId + " has an invalid field date.", e);
+			}
+			for (int party = 0; party < numberOfParties; party++) {
+				buffer = in.buffer(16);
+				Party aParty = new Party(lookup(names, buffer.getInt()));
+				int colour = buffer.getInt();
+				if (colour >= 0) {
+					aParty.setColour(lookup(colours, colour));
+				}
+				aParty.setProjectedNumberOfSeats(buffer.getFloat());
+				aParty.setProjectedPercentageOfVotes(buffer.getFloat());
+				aPoll.addParty(aParty);
+			}
+			list.addPoll(aPoll, pollId);
+		}
+		list.reservePollIds(nextPollId);
+		return list;
+	}
+
+	private static <T> int index(T value, List<T> values, HashMap<T, Integer> indices) {
+		if (value == null) {
+			return -1;
+		}
+		Integer index = indices.get(value);
+		if (index == null) {
+			index = values.size();
+			values.add(value);
+			indices.put(value, index);
+		}
+		return index;
+	}
+
+	private static <T> T lookup(T[] table, int index) throws IOException {
+		if (index < 0 || index >= table.length) {
+			throw new IOException("Corrupt poll list snapshot: index " + index + " is outside a table of " + table.length + ".");
+		}
+		return table[index];
+	}
+
+	/**
+	 * Buffers what is written to a channel.
+	 */
+	private static class Output {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		private Output(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Makes room for a number of bytes, writing out the buffer if needed.
+		 */
+		private ByteBuffer buffer(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+			return buffer;
+		}
+
+		private void putString(String value) throws IOException {
+			byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+			buffer(4).putInt(bytes.length);
+			// long strings are written in pieces of at most a buffer
+			int offset = 0;
+			while (offset < bytes.length) {
+				int length = Math.min(bytes.length - offset, BUFFER_SIZE);
+				buffer(length).put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Buffers what is read from a channel.
+	 */
+	private static class Input {
+		private final ReadableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		private Input(ReadableByteChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/**
+		 * Makes sure a number of bytes can be read from the buffer, reading more if needed.
+		 */
+		private ByteBuffer buffer(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				buffer.compact();
+				while (buffer.position() < bytes) {
+					if (channel.read(buffer) < 0) {
+						throw new EOFException("The poll list snapshot ends too early.");
+					}
+				}
+				buffer.flip();
+			}
+			return buffer;
+		}
+
+		/**
+		 * Reads the number of entries of a table, and checks that the bytes left can
+		 * hold that many.
+		 *
+		 * @param bytesEach the fewest bytes an entry takes.
+		 */
+		private int count(int bytesEach) throws IOException {
+			int count = buffer(4).getInt();
+			if (count < 0) {
+				throw new IOException("Corrupt poll list snapshot: negative count.");
+			}
+			if ((long) count * bytesEach > remaining()) {
+				throw new IOException("Corrupt poll list snapshot: " + count + " entries don't fit in the " + remaining() + " bytes left.");
+			}
+			return count;
+		}
+
+		/**
+		 * @return the number of bytes left to read, or Long.MAX_VALUE if the channel
+		 * does not know its size.
+		 */
+		private long remaining() throws IOException {
+			if (channel instanceof SeekableByteChannel) {
+				SeekableByteChannel file = (SeekableByteChannel) channel;
+				return buffer.remaining() + Math.max(0, file.size() - file.position());
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/**
+		 * @return the number of polls to allocate room for up front.  The count was
+		 * checked against the size of a file, but a channel of unknown size gets at
+		 * most a fixed amount, and the list grows if there are more polls.
+		 */
+		private int preallocation(int numberOfPolls) throws IOException {
+			return remaining() == Long.MAX_VALUE ? Math.min(numberOfPolls, MAX_PREALLOCATED) : numberOfPolls;
+		}
+
+		private String getString() throws IOException {
+			int count = count(1);
+			// the array grows as the bytes arrive, in case the size of the channel is unknown
+			byte[] bytes = new byte[Math.min(count, BUFFER_SIZE)];
+			int offset = 0;
+			while (offset < count) {
+				int length = Math.min(count - offset, BUFFER_SIZE);
+				if (offset + length > bytes.length) {
+					bytes = Arrays.copyOf(bytes, (int) Math.min(count, 2L * bytes.length + length));
+				}
+				buffer(length).get(bytes, offset, length);
+				offset += length;
+			}
+			return new String(bytes, 0, count, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,481 @@
+package model;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Column store for the polls of a poll list.  Instead of a <code>Poll</code> object
+ * holding separate <code>Party</code> objects, the projections of all polls are kept
+ * in two contiguous float arrays, indexed by poll (row) and party (column).  The party
+ * names and colours are stored once per column.
+ * <p>
+ * <code>Poll</code> and <code>Party</code> objects handed out for a row are thin views
+ * that read and write the arrays, so they can be created on demand and thrown away.
+ * Every row has a key that is never reused, and the keys increase with the rows, so a
+ * view finds its row again after rows above it were removed, and knows when its own
+ * row was removed.
+ * Like the running totals of a poll list, the column totals are updated with every
+ * write, so averaging a party never has to go over the rows.
+ *
+ * @author Joshua Lee
+ */
+class PollMatrix {
+	// arrays larger than this can't be allocated on most virtual machines
+	private static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+	private final int columns;
+	private final String[] partyNames;
+	private final Color[] partyColours;
+	// column + 1 of each party, indexed by party id, 0 if the party has no column
+	private final int[] columnById;
+
+	private String[] pollNames;
+	private float[] seats;
+	private float[] votes;
+	// one bit per cell, set once a party was added to a poll
+	private long[] present;
+	// key of each row, increasing with the row
+	private long[] rowKeys;
+	private long nextRowKey;
+	private int rows;
+
+	private final double[] seatTotals;
+	private final double[] voteTotals;
+	private final int[] occurrences;
+
+	/**
+	 * Creates an empty store with a column for each of the specified parties.
+	 *
+	 * @param names the names of the parties, one column each.
+	 * @param colours the colours of the parties, matched to the names by index.
+	 * @param expectedPolls the number of polls to allocate room for up front.
+	 */
+	PollMatrix(String[] names, Color[] colours, int expectedPolls) {
+		columns = names.length;
+		partyNames = names.clone();
+		partyColours = new Color[columns];
+		int[] ids = new int[columns];
+		int maxId = -1;
+		for (int column = 0; column < columns; column++) {
+			ids[column] = PartyRegistry.getInstance().intern(names[column]);
+			maxId = Math.max(maxId, ids[column]);
+			if (colours != null && column < colours.length) {
+				partyColours[column] = colours[column];
+			}
+		}
+		columnById = new int[maxId + 1];
+		for (int column = columns - 1; column >= 0; column--) {
+			if (ids[column] >= 0) {
+				columnById[ids[column]] = column + 1;
+			}
+		}
+
+		int capacity = Math.min(Math.max(1, expectedPolls), maxRows());
+		pollNames = new String[capacity];
+		rowKeys = new long[capacity];
+		seats = new float[cells(capacity)];
+		votes = new float[cells(capacity)];
+		present = new long[words(capacity)];
+
+		seatTotals = new double[columns];
+		voteTotals = new double[columns];
+		occurrences = new int[columns];
+	}
+
+	/**
+	 * @return the number of polls in the store.
+	 */
+	int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of parties in the store.
+	 */
+	int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Finds the column of a party.
+	 *
+	 * @param partyId the id of the party.
+	 * @return the column of the party, or -1 if the party has no column.
+	 */
+	int column(int partyId) {
+		if (partyId < 0 || partyId >= columnById.length) {
+			return -1;
+		}
+		return columnById[partyId] - 1;
+	}
+
+	/**
+	 * Adds an empty poll, growing the arrays by half when they are full.
+	 *
+	 * @param pollName the name of the poll.
+	 * @return the row of the new poll.
+	 */
+	int appendRow(String pollName) {
+		if (rows == pollNames.length) {
+			if (rows == maxRows()) {
+				throw new IllegalStateException("The column store can't hold more than " + rows + " polls.");
+			}
+			ensureCapacity((int) Math.min(maxRows(), pollNames.length + Math.max(1L, pollNames.length / 2)));
+		}
+		pollNames[rows] = pollName;
+		rowKeys[rows] = nextRowKey++;
+		return rows++;
+	}
+
+	/**
+	 * @return the number of polls the arrays can hold at most, so the number of
+	 * cells fits in an array.
+	 */
+	private int maxRows() {
+		return (int) (MAX_CELLS / Math.max(1, columns));
+	}
+
+	/**
+	 * @param capacity a number of polls, at most <code>maxRows()</code>.
+	 * @return the number of cells for that many polls.
+	 */
+	private int cells(int capacity) {
+		return Math.multiplyExact(capacity, columns);
+	}
+
+	/**
+	 * @param capacity a number of polls, at most <code>maxRows()</code>.
+	 * @return the number of words of presence bits for that many polls.
+	 */
+	private int words(int capacity) {
+		return (int) (((long) capacity * columns + 63) / 64);
+	}
+
+	/**
+	 * @return the position of a cell in the arrays.
+	 */
+	private int cell(int row, int column) {
+		return Math.multiplyExact(row, columns) + column;
+	}
+
+	/**
+	 * Grows the arrays so they can hold at least the given number of polls.
+	 *
+	 * @param capacity the number of polls the arrays should hold.
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity <= pollNames.length) {
+			return;
+		}
+		if (capacity > maxRows()) {
+			throw new IllegalStateException("The column store can't hold more than " + maxRows() + " polls.");
+		}
+		String[] grownNames = new String[capacity];
+		long[] grownKeys = new long[capacity];
+		float[] grownSeats = new float[cells(capacity)];
+		float[] grownVotes = new float[cells(capacity)];
+		long[] grownPresent = new long[words(capacity)];
+		System.arraycopy(pollNames, 0, grownNames, 0, rows);
+		System.arraycopy(rowKeys, 0, grownKeys, 0, rows);
+		System.arraycopy(seats, 0, grownSeats, 0, cells(rows));
+		System.arraycopy(votes, 0, grownVotes, 0, cells(rows));
+		System.arraycopy(present, 0, grownPresent, 0, present.length);
+		pollNames = grownNames;
+		rowKeys = grownKeys;
+		seats = grownSeats;
+		votes = grownVotes;
+		present = grownPresent;
+	}
+
+	/**
+	 * Removes a poll, taking its parties out of the column totals and moving the
+	 * polls after it up by one row.
+	 *
+	 * @param row the poll to remove.
+	 */
+	void removeRow(int row) {
+		for (int column = 0; column < columns; column++) {
+			if (isPresent(row, column)) {
+				int cell = cell(row, column);
+				seatTotals[column] -= seats[cell];
+				voteTotals[column] -= votes[cell];
+				occurrences[column]--;
+			}
+		}
+
+		int from = cell(row + 1, 0);
+		int to = cell(row, 0);
+		int moved = cells(rows - row - 1);
+		System.arraycopy(pollNames, row + 1, pollNames, row, rows - row - 1);
+		System.arraycopy(rowKeys, row + 1, rowKeys, row, rows - row - 1);
+		System.arraycopy(seats, from, seats, to, moved);
+		System.arraycopy(votes, from, votes, to, moved);
+		// the presence bits are not word aligned, so they move one at a time
+		for (int cell = to; cell < to + moved; cell++) {
+			setPresent(cell, (present[(cell + columns) >>> 6] & (1L << (cell + columns))) != 0);
+		}
+
+		rows--;
+		pollNames[rows] = null;
+		for (int cell = cell(rows, 0); cell < cell(rows, columns); cell++) {
+			seats[cell] = 0;
+			votes[cell] = 0;
+			setPresent(cell, false);
+		}
+	}
+
+	/**
+	 * Finds the row of a poll, which moves up when rows above it are removed.
+	 *
+	 * @param key the key of the row.
+	 * @param row the row the poll was last seen at.
+	 * @return the row of the poll, or -1 if it was removed.
+	 */
+	int locate(long key, int row) {
+		if (row < rows && rowKeys[row] == key) {
+			return row;
+		}
+		int low = 0;
+		int high = Math.min(row, rows - 1);
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (rowKeys[middle] < key) {
+				low = middle + 1;
+			} else if (rowKeys[middle] > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private void setPresent(int cell, boolean isPresent) {
+		if (isPresent) {
+			present[cell >>> 6] |= 1L << cell;
+		} else {
+			present[cell >>> 6] &= ~(1L << cell);
+		}
+	}
+
+	String getPollName(int row) {
+		return pollNames[row];
+	}
+
+	void setPollName(int row, String pollName) {
+		pollNames[row] = pollName;
+	}
+
+	String getPartyName(int column) {
+		return partyNames[column];
+	}
+
+	Color getPartyColour(int column) {
+		return partyColours[column];
+	}
+
+	float getSeats(int row, int column) {
+		return seats[cell(row, column)];
+	}
+
+	float getVotes(int row, int column) {
+		return votes[cell(row, column)];
+	}
+
+	boolean isPresent(int row, int column) {
+		int cell = cell(row, column);
+		return (present[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * Stores the projections of a party in a poll, adding the party to the poll if it
+	 * was not in it yet, and updates the column totals.
+	 *
+	 * @param row the poll.
+	 * @param column the party.
+	 * @param partySeats the projected number of seats.
+	 * @param partyVotes the projected percentage of votes.
+	 */
+	void set(int row, int column, float partySeats, float partyVotes) {
+		int cell = cell(row, column);
+		if ((present[cell >>> 6] & (1L << cell)) == 0) {
+			present[cell >>> 6] |= 1L << cell;
+			occurrences[column]++;
+		} else {
+			seatTotals[column] -= seats[cell];
+			voteTotals[column] -= votes[cell];
+		}
+		seats[cell] = partySeats;
+		votes[cell] = partyVotes;
+		seatTotals[column] += partySeats;
+		voteTotals[column] += partyVotes;
+	}
+
+	double getSeatTotal(int column) {
+		return seatTotals[column];
+	}
+
+	double getVoteTotal(int column) {
+		return voteTotals[column];
+	}
+
+	int getOccurrences(int column) {
+		return occurrences[column];
+	}
+
+	/**
+	 * Creates a view of one poll in the store.  The view follows the poll when rows
+	 * above it are removed, and fails with an <code>IllegalStateException</code> once
+	 * the poll itself was removed.
+	 *
+	 * @param row the poll.
+	 * @return a Poll that reads and writes the store.
+	 */
+	Poll getPoll(int row) {
+		return new RowPoll(this, rowKeys[row], row);
+	}
+
+	/**
+	 * Finds the row of a view, for the views.
+	 *
+	 * @param key the key of the row of the view.
+	 * @param row the row the view last saw its poll at.
+	 * @return the row of the poll.
+	 * @throws IllegalStateException if the poll was removed.
+	 */
+	private int rowOf(long key, int row) {
+		int current = locate(key, row);
+		if (current < 0) {
+			throw new IllegalStateException("The poll was removed from its poll list.");
+		}
+		return current;
+	}
+
+	/**
+	 * A poll that is a view of one row of a column store.
+	 */
+	private static class RowPoll extends Poll {
+		private final PollMatrix matrix;
+		private final long key;
+		private int row;
+
+		private RowPoll(PollMatrix matrix, long key, int row) {
+			this.matrix = matrix;
+			this.key = key;
+			this.row = row;
+		}
+
+		private int row() {
+			row = matrix.rowOf(key, row);
+			return row;
+		}
+
+		@Override
+		public String getPollName() {
+			return matrix.getPollName(row());
+		}
+
+		@Override
+		public void setPollName(String nameOfPoll) {
+			matrix.setPollName(row(), nameOfPoll);
+		}
+
+		@Override
+		public Party[] getParties() {
+			int current = row();
+			Party[] parties = new Party[getNumberOfParties()];
+			int index = 0;
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				if (matrix.isPresent(current, column)) {
+					parties[index++] = new CellParty(matrix, key, current, column);
+				}
+			}
+			return parties;
+		}
+
+		@Override
+		public int getNumberOfParties() {
+			int current = row();
+			int count = 0;
+			for (int column = 0; column < matrix.getColumns(); column++) {
+				if (matrix.isPresent(current, column)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public Party getParty(int partyId) {
+			int current = row();
+			int column = matrix.column(partyId);
+			if (column < 0 || !matrix.isPresent(current, column)) {
+				return null;
+			}
+			return new CellParty(matrix, key, current, column);
+		}
+
+		@Override
+		public void addParty(Party aParty) {
+			if (aParty == null) {
+				System.out.println("ERROR: you can't add an empty party");
+				return;
+			}
+			int column = matrix.column(aParty.getId());
+			if (column < 0) {
+				System.out.println("ERROR: " + aParty.getName() + " is not a party of this poll list and can't be added.");
+				return;
+			}
+			matrix.set(row(), column, aParty.getProjectedNumberOfSeats(), aParty.getProjectedPercentageOfVotes());
+		}
+
+		@Override
+		boolean claim(PollList aPollList) {
+			// the store keeps its own totals, other lists have to rescan this view
+			return false;
+		}
+	}
+
+	/**
+	 * A party that is a view of one cell of a column store.
+	 */
+	private static class CellParty extends Party {
+		private final PollMatrix matrix;
+		private final long key;
+		private int row;
+		private final int column;
+
+		private CellParty(PollMatrix matrix, long key, int row, int column) {
+			super(matrix.getPartyName(column));
+			setColour(matrix.getPartyColour(column));
+			this.matrix = matrix;
+			this.key = key;
+			this.row = row;
+			this.column = column;
+		}
+
+		private int row() {
+			row = matrix.rowOf(key, row);
+			return row;
+		}
+
+		@Override
+		public float getProjectedNumberOfSeats() {
+			return matrix.getSeats(row(), column);
+		}
+
+		@Override
+		public float getProjectedPercentageOfVotes() {
+			return matrix.getVotes(row(), column);
+		}
+
+		@Override
+		void storeProjection(float seats, float percentageOfVotes) {
+			matrix.set(row(), column, seats, percentageOfVotes);
+		}
+
+		@Override
+		public void setName(String thePartyName) {
+			System.out.println("ERROR: the parties of a column store can't be renamed.");
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package model;
+
+/**
+ * Describes how much each poll counts in a weighted aggregate of a poll list.  The
+ * weight of a poll is the product of three factors:
+ * <ul>
+ * <li>its sample size: the square root of the sample size relative to
+ * <code>defaultSampleSize</code>, since the error of a poll shrinks with the square
+ * root of its sample.  Polls with an unknown sample size count as the default.</li>
+ * <li>the rating of its pollster.</li>
+ * <li>its age: the weight halves every <code>halfLifeDays</code> days.</li>
+ * </ul>
+ * Because the age factor is exponential, the weights of two polls keep the same ratio
+ * as time passes.  A poll list can therefore keep its weighted sums relative to a fixed
+ * anchor date and never has to update them as the days go by.
+ *
+ * @author Joshua Lee
+ */
+public class PollWeighting {
+	public static final double DEFAULT_HALF_LIFE_DAYS = 14;
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+	private final double halfLifeDays;
+	private final int defaultSampleSize;
+
+	/**
+	 * Creates a weighting with the default half life and sample size.
+	 */
+	public PollWeighting() {
+		this(DEFAULT_HALF_LIFE_DAYS, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Creates a weighting.
+	 *
+	 * @param halfLifeDays the number of days after which a poll counts half as much,
+	 * 0 or less to ignore the age of polls.
+	 * @param defaultSampleSize the sample size of a poll with weight 1, also used for
+	 * polls with an unknown sample size.
+	 */
+	public PollWeighting(double halfLifeDays, int defaultSampleSize) {
+		this.halfLifeDays = halfLifeDays;
+		this.defaultSampleSize = Math.max(1, defaultSampleSize);
+	}
+
+	/**
+	 * @return the number of days after which a poll counts half as much.
+	 */
+	public double getHalfLifeDays() {
+		return halfLifeDays;
+	}
+
+	/**
+	 * @return the sample size of a poll with weight 1.
+	 */
+	public int getDefaultSampleSize() {
+		return defaultSampleSize;
+	}
+
+	/**
+	 * Computes the weight of a poll relative to an anchor date.  A poll taken on the
+	 * anchor date with the default sample size and an average pollster weighs 1.
+	 *
+	 * @param poll the poll to weigh.
+	 * @param anchorDay the anchor date, as a day count since the epoch.
+	 * @return the weight of the poll.
+	 */
+	double weight(Poll poll, long anchorDay) {
+		int sampleSize = poll.getSampleSize() > 0 ? poll.getSampleSize() : defaultSampleSize;
+		double weight = Math.sqrt((double)sampleSize / defaultSampleSize) * poll.getPollsterRating();
+		if (halfLifeDays > 0) {
+			weight *= Math.pow(2, (poll.getFieldDate().toEpochDay() - anchorDay) / halfLifeDays);
+		}
+		return weight;
+	}
+
+	/**
+	 * Finds how far ahead of an anchor date a poll may be before the anchor has to
+	 * move, to keep the age factor well within the range of a double.
+	 *
+	 * @return the number of days.
+	 */
+	long rebaseDistance() {
+		return halfLifeDays > 0 ? (long)(256 * halfLifeDays) + 1 : Long.MAX_VALUE;
+	}
+}
@@ -0,0 +1,256 @@
+package model;
+
+import java.util.IdentityHashMap;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Aggregate of the most recent polls only.  The values of the last
+ * <code>windowSize</code> polls are kept in a ring buffer, together with running
+ * sums per party.  Adding a poll retires the oldest one, which only touches the
+ * parties of those two polls, so the aggregate never rescans the history.
+ * <p>
+ * A poll list keeps one of these up to date once <code>PollList.setRollingWindow</code>
+ * is called, but it can also be fed directly with <code>add</code>.
+ *
+ * @author Joshua Lee
+ */
+public class RollingAggregate {
+	private final int windowSize;
+
+	// ring buffer of the polls in the window and the values read from them
+	private final Poll[] ringPolls;
+	private final int[][] ringIds;
+	private final float[][] ringSeats;
+	private final float[][] ringVotes;
+	private int oldest;
+	private int count;
+	// slot of the newest copy of each poll in the window, so a change to a poll
+	// only reads that slot again, and the number of slots holding a poll that
+	// is also in a newer slot, in which case every slot of the poll is read
+	private final IdentityHashMap<Poll, Integer> slots = new IdentityHashMap<>();
+	private int repeated;
+
+	// running sums over the window, indexed by party id
+	private double[] seatSums = new double[0];
+	private double[] voteSums = new double[0];
+	private int[] occurrences = new int[0];
+	private Color[] colours = new Color[0];
+
+	/**
+	 * Creates an empty rolling aggregate.
+	 *
+	 * @param windowSize the number of most recent polls to aggregate, at least 1.
+	 */
+	public RollingAggregate(int windowSize) {
+		this.windowSize = Math.max(1, windowSize);
+		ringPolls = new Poll[this.windowSize];
+		ringIds = new int[this.windowSize][];
+		ringSeats = new float[this.windowSize][];
+		ringVotes = new float[this.windowSize][];
+	}
+
+	/**
+	 * @return the number of most recent polls that are aggregated.
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * @return the number of polls currently in the window.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Adds the newest poll to the window, retiring the oldest poll if the window is full.
+	 *
+	 * @param aPoll the poll to add.
+	 */
+	public void add(Poll aPoll) {
+		if (aPoll == null) {
+			System.out.println("ERROR: The argument is null. The aggregate will be left unchanged.");
+			return;
+		}
+		int slot;
+		if (count == windowSize) {
+			slot = oldest;
+			retire(slot);
+			forget(slot);
+			oldest = (oldest + 1) % windowSize;
+		} else {
+			slot = (oldest + count) % windowSize;
+			count++;
+		}
+		ringPolls[slot] = aPoll;
+		if (slots.put(aPoll, slot) != null) {
+			repeated++;
+		}
+		read(slot);
+	}
+
+	/**
+	 * Empties the window.
+	 */
+	public void clear() {
+		for (int slot = 0; slot < windowSize; slot++) {
+			ringPolls[slot] = null;
+			ringIds[slot] = null;
+			ringSeats[slot] = null;
+			ringVotes[slot] = null;
+		}
+		seatSums = new double[0];
+		voteSums = new double[0];
+		occurrences = new int[0];
+		colours = new Color[0];
+		slots.clear();
+		repeated = 0;
+		oldest = 0;
+		count = 0;
+	}
+
+	/**
+	 * Reads a poll in the window again after it changed.  Polls that are not in the
+	 * window are ignored.  Only the slot of the poll is read again, so it takes as
+	 * long as the poll has parties, however large the window is.
+	 *
+	 * @param aPoll the poll that changed.
+	 */
+	public void refresh(Poll aPoll) {
+		Integer newest = slots.get(aPoll);
+		if (newest == null) {
+			return;
+		}
+		if (repeated == 0) {
+			retire(newest);
+			read(newest);
+			return;
+		}
+		// the poll may be in more than one slot
+		for (int i = 0; i < count; i++) {
+			int slot = (oldest + i) % windowSize;
+			if (ringPolls[slot] == aPoll) {
+				retire(slot);
+				read(slot);
+			}
+		}
+	}
+
+	/**
+	 * Reads every poll in the window again.
+	 */
+	public void refreshAll() {
+		for (int i = 0; i < count; i++) {
+			int slot = (oldest + i) % windowSize;
+			retire(slot);
+			read(slot);
+		}
+	}
+
+	/**
+	 * Gets the average data of a party over the polls in the window.
+	 *
+	 * @param name the name of the party.
+	 * @return a Party with the average data of the named party.
+	 */
+	public Party getAveragePartyData(String name) {
+		Party avgParty = new Party(name);
+		int id = PartyRegistry.getInstance().idOf(name);
+		if (id >= 0 && id < occurrences.length && occurrences[id] != 0) {
+			avgParty.setProjectedNumberOfSeats((float)(seatSums[id] / occurrences[id]));
+			avgParty.setProjectedPercentageOfVotes((float)(voteSums[id] / occurrences[id]));
+			avgParty.setColour(colours[id]);
+		}
+		return avgParty;
+	}
+
+	/**
+	 * Gets the aggregate of the polls in the window.
+	 *
+	 * @param names the names of the parties to include.
+	 * @return a poll named "Aggregate (last N)" with the average data of each party.
+	 */
+	public Poll getAggregatePoll(String[] names) {
+		Poll aggregate = new Poll("Aggregate (last " + windowSize + ")", names.length);
+		for (int i = 0; i < names.length; i++) {
+			aggregate.addParty(getAveragePartyData(names[i]));
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Copies the values of the poll in a slot into the ring buffer and adds them to the sums.
+	 */
+	private void read(int slot) {
+		Poll aPoll = ringPolls[slot];
+		Party[] parties = aPoll.getParties();
+		int numberOfParties = aPoll.getNumberOfParties();
+		int[] ids = new int[numberOfParties];
+		float[] seats = new float[numberOfParties];
+		float[] votes = new float[numberOfParties];
+		for (int n = 0; n < numberOfParties; n++) {
+			ids[n] = parties[n].getId();
+			seats[n] = parties[n].getProjectedNumberOfSeats();
+			votes[n] = parties[n].getProjectedPercentageOfVotes();
+			if (ids[n] < 0) {
+				continue;
+			}
+			grow(ids[n]);
+			seatSums[ids[n]] += seats[n];
+			voteSums[ids[n]] += votes[n];
+			occurrences[ids[n]]++;
+			colours[ids[n]] = parties[n].colour();
+		}
+		ringIds[slot] = ids;
+		ringSeats[slot] = seats;
+		ringVotes[slot] = votes;
+	}
+
+	/**
+	 * Takes the values stored in a slot out of the sums.
+	 */
+	private void retire(int slot) {
+		int[] ids = ringIds[slot];
+		for (int n = 0; n < ids.length; n++) {
+			if (ids[n] >= 0) {
+				seatSums[ids[n]] -= ringSeats[slot][n];
+				voteSums[ids[n]] -= ringVotes[slot][n];
+				occurrences[ids[n]]--;
+			}
+		}
+	}
+
+	/**
+	 * Forgets the poll in a slot that is about to be reused.  Slots are reused
+	 * oldest first, so if the poll is in another slot, that slot is newer.
+	 */
+	private void forget(int slot) {
+		Poll aPoll = ringPolls[slot];
+		if (slots.get(aPoll) == slot) {
+			slots.remove(aPoll);
+		} else {
+			repeated--;
+		}
+	}
+
+	private void grow(int partyId) {
+		if (partyId < occurrences.length) {
+			return;
+		}
+		int size = Math.max(partyId + 1, PartyRegistry.getInstance().size());
+		double[] grownSeats = new double[size];
+		double[] grownVotes = new double[size];
+		int[] grownOccurrences = new int[size];
+		Color[] grownColours = new Color[size];
+		System.arraycopy(seatSums, 0, grownSeats, 0, seatSums.length);
+		System.arraycopy(voteSums, 0, grownVotes, 0, voteSums.length);
+		System.arraycopy(occurrences, 0, grownOccurrences, 0, occurrences.length);
+		System.arraycopy(colours, 0, grownColours, 0, colours.length);
+		seatSums = grownSeats;
+		voteSums = grownVotes;
+		occurrences = grownOccurrences;
+		colours = grownColours;
+	}
+}
@@ -0,0 +1,124 @@
+package model;
+
+/**
+ * The outcome of simulating elections with a <code>MajoritySimulator</code>: for each
+ * party, how often it won a majority or the most seats, and the range its seats and
+ * votes fell in.
+ *
+ * @author Joshua Lee
+ */
+public class SimulationResult {
+	private final String[] partyNames;
+	private final int numOfSeats;
+	private final int trials;
+	private final boolean converged;
+	private final int[] majorities;
+	private final int[] pluralities;
+	private final int[][] seatCounts;
+	private final int[][] voteCounts;
+
+	SimulationResult(String[] partyNames, int numOfSeats, int trials, boolean converged,
+			int[] majorities, int[] pluralities, int[][] seatCounts, int[][] voteCounts) {
+		this.partyNames = partyNames.clone();
+		this.numOfSeats = numOfSeats;
+		this.trials = trials;
+		this.converged = converged;
+		this.majorities = majorities;
+		this.pluralities = pluralities;
+		this.seatCounts = seatCounts;
+		this.voteCounts = voteCounts;
+	}
+
+	/**
+	 * @return the number of elections that were simulated.
+	 */
+	public int getTrials() {
+		return trials;
+	}
+
+	/**
+	 * @return true if the probabilities converged before the maximum number of trials.
+	 */
+	public boolean hasConverged() {
+		return converged;
+	}
+
+	/**
+	 * @return the names of the parties, in the order used by the other getters.
+	 */
+	public String[] getPartyNames() {
+		return partyNames.clone();
+	}
+
+	/**
+	 * @param party the index of the party.
+	 * @return the probability that the party wins more than half of the seats.
+	 */
+	public double getMajorityProbability(int party) {
+		return trials == 0 ? 0 : (double) majorities[party] / trials;
+	}
+
+	/**
+	 * @param party the index of the party.
+	 * @return the probability that the party wins the most seats.
+	 */
+	public double getPluralityProbability(int party) {
+		return trials == 0 ? 0 : (double) pluralities[party] / trials;
+	}
+
+	/**
+	 * Finds the number of seats a party wins at most in a given share of the simulated elections.
+	 *
+	 * @param party the index of the party.
+	 * @param quantile the share of the elections, between 0 and 1.
+	 * @return the number of seats.
+	 */
+	public int getSeatQuantile(int party, double quantile) {
+		return quantile(seatCounts[party], quantile);
+	}
+
+	/**
+	 * Finds the percentage of votes a party wins at most in a given share of the simulated elections.
+	 *
+	 * @param party the index of the party.
+	 * @param quantile the share of the elections, between 0 and 1.
+	 * @return the percentage of votes, between 0 and 1.
+	 */
+	public float getVoteQuantile(int party, double quantile) {
+		return (float) quantile(voteCounts[party], quantile) / MajoritySimulator.VOTE_STEPS;
+	}
+
+	private int quantile(int[] counts, double quantile) {
+		long target = (long) Math.ceil(quantile * trials);
+		long seen = 0;
+		for (int value = 0; value < counts.length; value++) {
+			seen += counts[value];
+			if (seen >= Math.max(1, target)) {
+				return value;
+			}
+		}
+		return counts.length - 1;
+	}
+
+	/**
+	 * Creates a table with a line per party giving its chance of a majority and of the
+	 * most seats, and the 90% intervals of its seats and votes.
+	 *
+	 * @return the table, preceded by the number of simulated elections.
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(trials).append(" simulated elections, ").append(numOfSeats).append(" seats")
+			.append(converged ? "" : " (not converged)").append('\n');
+		result.append(String.format("%-20s %9s %9s %15s %17s%n", "Party", "Majority", "Most", "Seats (90%)", "Votes (90%)"));
+		for (int party = 0; party < partyNames.length; party++) {
+			result.append(String.format("%-20s %8.1f%% %8.1f%% %7d - %-5d %7.1f%% - %5.1f%%%n",
+					partyNames[party],
+					getMajorityProbability(party) * 100,
+					getPluralityProbability(party) * 100,
+					getSeatQuantile(party, 0.05), getSeatQuantile(party, 0.95),
+					getVoteQuantile(party, 0.05) * 100, getVoteQuantile(party, 0.95) * 100));
+		}
+		return result.toString();
+	}
+}
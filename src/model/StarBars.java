@@ -0,0 +1,166 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prebuilt star bars for the text visualizations of parties.  The bar of a party
+ * only depends on how many whole stars it gets and, below a majority, how many
+ * stars it is missing, so for one scale (the maximum number of stars and the value
+ * of a star) there are only a few hundred different bars.  They are built the first
+ * time they are needed and reused for every later party drawn at the same scale.
+ * <p>
+ * A bar includes the padding up to <code>maxStars</code> and the space before the
+ * party information, so drawing a party is a lookup and a single append.
+ *
+ * @author Joshua Lee
+ */
+final class StarBars {
+	// scales with more stars than this are drawn without caching
+	private static final int MAX_CACHED_STARS = 256;
+	// number of scales kept before the cache is emptied
+	private static final int MAX_CACHED_SCALES = 64;
+
+	private static final ConcurrentHashMap<Scale, StarBars> cache = new ConcurrentHashMap<>();
+	// almost every bar is drawn at the scale of the previous one
+	private static volatile StarBars last;
+
+	private final int maxStars;
+	private final double valuePerStar;
+	private final double majority;
+	private final double majorityStars;
+
+	// bars of parties with a majority, indexed by stars
+	private final String[] majorityBars;
+	// bars of parties without a majority, indexed by stars and missing stars
+	private final String[][] minorityBars;
+
+	private StarBars(int maxStars, double valuePerStar) {
+		this.maxStars = maxStars;
+		this.valuePerStar = valuePerStar;
+		// the same arithmetic as the party visualization always used
+		majority = ((maxStars * valuePerStar)/2);
+		majorityStars = Math.ceil(majority/valuePerStar);
+
+		boolean cached = maxStars >= 0 && maxStars <= MAX_CACHED_STARS;
+		majorityBars = new String[cached ? 2 * maxStars + 2 : 0];
+		minorityBars = new String[cached ? maxStars + 1 : 0][];
+	}
+
+	/**
+	 * Get the bars for a scale.
+	 *
+	 * @param maxStars the maximum number of stars that should be displayed on a line.
+	 * @param valuePerStar the value each star represents.
+	 * @return the bars for that scale.
+	 */
+	static StarBars forScale(int maxStars, double valuePerStar) {
+		StarBars bars = last;
+		if (bars != null && bars.maxStars == maxStars
+				&& Double.doubleToLongBits(bars.valuePerStar) == Double.doubleToLongBits(valuePerStar)) {
+			return bars;
+		}
+		if (cache.size() >= MAX_CACHED_SCALES) {
+			cache.clear();
+		}
+		bars = cache.computeIfAbsent(new Scale(maxStars, valuePerStar), scale -> new StarBars(maxStars, valuePerStar));
+		last = bars;
+		return bars;
+	}
+
+	/**
+	 * Get the bar for a value.
+	 *
+	 * @param predictedValue the value to draw, such as the predicted number of seats.
+	 * @return the stars, the majority bar and the padding, followed by a space.
+	 */
+	String bar(double predictedValue) {
+		int totalNumberOfStars = (int)(predictedValue/valuePerStar);
+
+		// if the party has enough seats
+		if (predictedValue >= majority) {
+			if (totalNumberOfStars < 0 || totalNumberOfStars >= majorityBars.length) {
+				return buildMajorityBar(totalNumberOfStars);
+			}
+			String bar = majorityBars[totalNumberOfStars];
+			if (bar == null) {
+				// Strings are immutable, so a racing thread at worst builds the same bar twice
+				bar = buildMajorityBar(totalNumberOfStars);
+				majorityBars[totalNumberOfStars] = bar;
+			}
+			return bar;
+		}
+
+		// check how many seats are missing to reach majority
+		double missingStars = Math.ceil(((majority - predictedValue)/valuePerStar));
+		if (totalNumberOfStars < 0 || totalNumberOfStars >= minorityBars.length
+				|| missingStars < 0 || missingStars > maxStars + 1) {
+			return buildMinorityBar(totalNumberOfStars, missingStars);
+		}
+		String[] bars = minorityBars[totalNumberOfStars];
+		if (bars == null) {
+			bars = new String[maxStars + 2];
+			minorityBars[totalNumberOfStars] = bars;
+		}
+		String bar = bars[(int) missingStars];
+		if (bar == null) {
+			bar = buildMinorityBar(totalNumberOfStars, missingStars);
+			bars[(int) missingStars] = bar;
+		}
+		return bar;
+	}
+
+	private String buildMajorityBar(int totalNumberOfStars) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < totalNumberOfStars; i++) {
+			// once the majority has been hit, add bar then continue
+			if (i == majorityStars) result.append('|');
+			result.append('*');
+		}
+		// if majority happens to be exactly half
+		if (majorityStars == totalNumberOfStars) result.append('|');
+		return pad(result);
+	}
+
+	private String buildMinorityBar(int totalNumberOfStars, double missingStars) {
+		StringBuilder result = new StringBuilder();
+		// stars, then missing seats, then bar to indicate majority
+		for (int i = 0; i < totalNumberOfStars; i++) result.append('*');
+		for (int j = 0; j < missingStars; j++) result.append(' ');
+		result.append('|');
+		return pad(result);
+	}
+
+	private String pad(StringBuilder result) {
+		// add spaces in order to reach maxStars, then the space before the party information
+		int numberOfStarsLeft = maxStars - result.length();
+		for (int i = 0; i <= numberOfStarsLeft; i++) result.append(' ');
+		return result.append(' ').toString();
+	}
+
+	/**
+	 * Key of the cache.
+	 */
+	private static final class Scale {
+		private final int maxStars;
+		private final long valuePerStarBits;
+
+		private Scale(int maxStars, double valuePerStar) {
+			this.maxStars = maxStars;
+			this.valuePerStarBits = Double.doubleToLongBits(valuePerStar);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Scale)) {
+				return false;
+			}
+			Scale scale = (Scale) other;
+			return maxStars == scale.maxStars && valuePerStarBits == scale.valuePerStarBits;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * maxStars + Long.hashCode(valuePerStarBits);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 module teamassignment2 {
 	requires javafx.controls;
 	requires javafx.fxml;
+	requires jdk.httpserver;
 	
 	opens application to javafx.graphics, javafx.fxml;
 }